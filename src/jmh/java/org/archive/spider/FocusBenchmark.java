@@ -0,0 +1,36 @@
+package org.archive.spider;
+
+import org.archive.spider.core.Filter;
+import org.archive.spider.util.PathUtilsBenchmark;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FocusBenchmark {
+
+    @Param({"10000"})
+    public int count;
+
+    @Param({"mp3", "mp3,flac,ogg,png,jpg,txt"})
+    public String focus;
+
+    private String[] names;
+    private Filter filter;
+
+    @Setup
+    public void setup() {
+        names = PathUtilsBenchmark.newNames(count);
+        filter = Filter.ofExtensions(focus.split(","));
+    }
+
+    @Benchmark
+    public void isFocus(Blackhole blackhole) {
+        for (String it : names) {
+            blackhole.consume(filter.acceptFile(it, -1));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.archive.spider.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Parses archive.org shaped fixtures (src/jmh/resources/fixtures) so results do not depend on the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ListingParseBenchmark {
+
+    private static final String URL = "https://archive.org/download/benchmark-fixture/";
+
+    private byte[] html;
+    private String json;
+    private HtmlListingBackend backend;
+
+    @Setup
+    public void setup() throws IOException {
+        html = readFixture("listing.html");
+        json = new String(readFixture("metadata.json"), StandardCharsets.UTF_8);
+        backend = new HtmlListingBackend("https://archive.org/download/", new PageFetcher(null));
+    }
+
+    @Benchmark
+    public List<ListingEntry> html() throws IOException {
+        return backend.parse(html, URL);
+    }
+
+    @Benchmark
+    public List<ListingEntry> htmlDocument() throws IOException {
+        return backend.parseDocument(html, URL);
+    }
+
+    @Benchmark
+    public List<ListingEntry> metadata() throws IOException {
+        return MetadataListingBackend.parse(json, "");
+    }
+
+    static byte[] readFixture(String name) throws IOException {
+        try (InputStream in = ListingParseBenchmark.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IOException("Missing fixture \"" + name + "\"");
+            }
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.archive.spider.download;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/*
+ * End-to-end DownloadManager runs against a local MockWebServer serving in-memory bodies,
+ * every invocation downloads `files` files of `size` MiB into a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class DownloadThroughputBenchmark {
+
+    @Param({"1", "4"})
+    public int jobs;
+
+    @Param({"1", "4"})
+    public int segments;
+
+    @Param({"64"})
+    public int size;
+
+    @Param({"4"})
+    public int files;
+
+    private MockWebServer server;
+    private Path directory;
+    /* The invocation's manager, terminated outside the measurement before the next one starts. */
+    private DownloadManager dm;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final byte[] payload = new byte[size * 1048576];
+        new Random(42).nextBytes(payload);
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String range = request.getHeader("Range");
+                if (range == null) {
+                    return new MockResponse()
+                            .setHeader("Accept-Ranges", "bytes")
+                            .setHeader("ETag", "\"fixture\"")
+                            .setBody(new Buffer().write(payload));
+                }
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                int start = Integer.parseInt(bounds[0]);
+                int end = bounds.length > 1 ? Integer.parseInt(bounds[1]) : payload.length - 1;
+                return new MockResponse()
+                        .setResponseCode(206)
+                        .setHeader("Accept-Ranges", "bytes")
+                        .setHeader("ETag", "\"fixture\"")
+                        .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + payload.length)
+                        .setBody(new Buffer().write(payload, start, end - start + 1));
+            }
+        });
+        server.start();
+        directory = Files.createTempDirectory("archive-benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        server.shutdown();
+        clean();
+        Files.deleteIfExists(directory);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() throws IOException, InterruptedException {
+        if (dm != null) {
+            dm.shutdown();
+            if (!dm.awaitTermination(1, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Download manager did not terminate");
+            }
+            dm = null;
+        }
+        try (Stream<Path> stream = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) stream::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int download() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(files);
+        final AtomicInteger failures = new AtomicInteger(0);
+        dm = new DownloadManager(jobs, new DownloadManager.DownloadEventListener() {
+            @Override
+            public void onDownloadSuccessful(int jobId, @Nullable String filename, @Nullable URL url) {
+            }
+
+            @Override
+            public void onDownloadFailure(int jobId, @Nullable String filename, @Nullable URL url, Exception e) {
+                failures.incrementAndGet();
+            }
+
+            @Override
+            public void onJobCompleted(int jobId) {
+                latch.countDown();
+            }
+        });
+        dm.setSegmentation(segments, 1048576L);
+        for (int i = 0; i < files; i++) {
+            dm.download(server.url("/file" + i + ".bin").url(), directory.resolve("file" + i + ".bin"));
+        }
+        latch.await();
+        if (failures.get() > 0) {
+            throw new IllegalStateException(failures.get() + " downloads failed");
+        }
+        return files;
+    }
+}
@@ -0,0 +1,61 @@
+package org.archive.spider.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathUtilsBenchmark {
+
+    @Param({"10000"})
+    public int count;
+
+    private String[] names;
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        names = newNames(count);
+        paths = new String[count];
+        for (int i = 0; i < count; i++) {
+            paths[i] = "benchmark-fixture/Disc%20" + (i % 8 + 1) + "/" + names[i];
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        for (String it : names) {
+            blackhole.consume(PathUtils.decode(it));
+        }
+    }
+
+    @Benchmark
+    public void getName(Blackhole blackhole) {
+        for (String it : paths) {
+            blackhole.consume(PathUtils.getName(it));
+        }
+    }
+
+    @Benchmark
+    public void getExtensionName(Blackhole blackhole) {
+        for (String it : names) {
+            blackhole.consume(PathUtils.getExtensionName(it));
+        }
+    }
+
+    /* A fixed seed keeps the name set identical between runs. */
+    public static String[] newNames(int count) {
+        final String[] extensions = {"mp3", "FLAC", "ogg", "png", "jpg", "txt", "xml", "sqlite", "torrent", "m3u", "iso", "zip"};
+        Random random = new Random(42);
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = String.format("%02d%%20-%%20Track%%20%04d%%20%%28Remaster%%20%d%%29.%s",
+                    i % 99 + 1, i, 1990 + random.nextInt(30), extensions[random.nextInt(extensions.length)]);
+        }
+        return names;
+    }
+}
@@ -1,8 +1,28 @@
 package org.archive.spider;
 
-import org.archive.spider.core.Node;
+import okhttp3.OkHttpClient;
+import org.archive.spider.core.Filter;
+import org.archive.spider.core.HtmlListingBackend;
+import org.archive.spider.core.ListingBackend;
+import org.archive.spider.core.ListingCache;
+import org.archive.spider.core.MetadataListingBackend;
+import org.archive.spider.core.PageFetcher;
 import org.archive.spider.core.Spider;
+import org.archive.spider.download.DedupIndex;
 import org.archive.spider.download.DownloadManager;
+import org.archive.spider.download.DownloadRequest;
+import org.archive.spider.download.DownloadResult;
+import org.archive.spider.download.Manifest;
+import org.archive.spider.download.RateLimiter;
+import org.archive.spider.download.RetryPolicy;
+import org.archive.spider.download.SchedulingPolicy;
+import org.archive.spider.download.SyncChecker;
+import org.archive.spider.metrics.Metrics;
+import org.archive.spider.metrics.MetricsRegistry;
+import org.archive.spider.metrics.MetricsReporter;
+import org.archive.spider.metrics.MetricsServer;
+import org.archive.spider.queue.WorkQueue;
+import org.archive.spider.util.ByteFormatter;
 import org.archive.spider.util.Logger;
 import org.archive.spider.util.PathUtils;
 import org.jetbrains.annotations.NotNull;
@@ -15,138 +35,410 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Main {
-    private static String[] focus;
+    private static final List<String> filters = new ArrayList<>();
+    private static Filter filter;
     private static String out = System.getProperty("user.dir");
     private static Proxy proxy = Proxy.NO_PROXY;
     private static final Set<String> resources = new LinkedHashSet<>();
-    private final static String XPATH = "//*[@id=\"maincontent\"]/div/div/pre/table/tbody/tr[position()>1]/td/a[1]";
+    private final static String DOWNLOAD_URL = "https://archive.org/download/";
+    private static String listing = "metadata";
+    private static String cacheDir;
+    private static boolean cache = true;
+    private static long cacheMaxAge = 7 * 24 * 3600 * 1000L;
+    private static long cacheMaxSize = 256 * 1048576L;
     private static int jobs = 1;
+    private static int maxJobs = 1;
+    private static boolean virtualThreads = false;
+    private static int queueCapacity = 10000;
+    private static SchedulingPolicy schedule = SchedulingPolicy.FIFO;
+    private static boolean sync = false;
+    private static int crawlJobs = 4;
+    private static int segments = 1;
+    private static long segmentThreshold = 32 * 1048576L;
+    private static long resolveTtl = 10 * 60 * 1000L;
+    private static int retries = 3;
+    private static long retryDelay = 1000;
+    private static long maxRate = 0;
+    private static long maxJobRate = 0;
+    private static List<RateLimiter.Window> rateSchedule = Collections.emptyList();
+    private static String progress = "bars";
+    private static int metricsPort = 0;
+    private static String metricsFile;
+    private static long metricsInterval = 10000;
+    private static boolean verify = true;
+    private static boolean manifest = true;
+    private static String manifestFile;
+    private static boolean dedup = false;
+    private static String dedupDir;
+    private static String coordinator;
+    private static String worker;
+    private static String shard = "resource";
+    private static long leaseTimeout = 5 * 60 * 1000L;
+    private static int leaseAttempts = 3;
+    private static final int FILES_PER_ITEM = 500;
 
     private static class Kernel implements DownloadManager.DownloadEventListener {
-        private final Spider spider = new Spider("https://archive.org/download/", proxy);
-        private final DownloadManager dm = new DownloadManager(jobs, this, proxy);
+        private final MetricsRegistry metrics = new MetricsRegistry();
+        private final OkHttpClient client = new OkHttpClient.Builder()
+                .proxy(proxy)
+                .build();
+        private final Spider spider = new Spider(DOWNLOAD_URL, crawlJobs, newListingBackends());
+        private final DownloadManager dm = new DownloadManager(jobs, maxJobs, queueCapacity, this, proxy, virtualThreads);
+        private final SyncChecker syncChecker = new SyncChecker(client);
         private final AtomicInteger total = new AtomicInteger(0);
         private final AtomicInteger success = new AtomicInteger(0);
         private final AtomicInteger failure = new AtomicInteger(0);
-        private int skip = 0;
+        private final AtomicInteger skip = new AtomicInteger(0);
+        private final AtomicInteger created = new AtomicInteger(0);
+        private final AtomicInteger updated = new AtomicInteger(0);
+        private MetricsServer metricsServer;
+        private MetricsReporter metricsReporter;
 
-        public void run() {
-            ArrayList<Node> nodes = new ArrayList<>();
-            for (String resource : resources) {
-                Logger.message("Searching in \"" + resource + "\" ...");
-                Node node = onSearchNode(resource, XPATH);
-                if (node != null) {
-                    int[] statistics = statistics(node);
-                    System.out.printf("Total: %-5d\tFocus: %s%-5d%s\n", statistics[0], Logger.GREEN, statistics[1], Logger.RESET);
-                    total.addAndGet(statistics[1]);
-                    nodes.add(node);
-                } else {
-                    Logger.waring("Sorry, no resources found in \"" + resource + "\"");
+        Kernel() {
+            dm.setSegmentation(segments, segmentThreshold);
+            dm.setResolutionTtl(resolveTtl);
+            dm.setRateLimit(maxRate, maxJobRate, rateSchedule);
+            dm.setRetryPolicy(new RetryPolicy(retries, retryDelay, 2 * 60 * 1000));
+            dm.setSchedulingPolicy(schedule);
+            dm.setMetrics(metrics);
+            dm.setProgressBars("bars".equals(progress));
+            dm.setVerification(verify, newManifest());
+            final DedupIndex dedupIndex = newDedupIndex();
+            dm.setDedup(dedupIndex);
+            syncChecker.setDedup(dedupIndex);
+            spider.setFilter(filter);
+            metrics.gauge(Metrics.FILES_FOUND, "Files selected for download so far.", total::get);
+            metrics.gauge(Metrics.FILES_SKIPPED, "Files skipped as already present or unchanged.", skip::get);
+            startMetrics();
+        }
+
+        private void startMetrics() {
+            if (metricsPort > 0) {
+                try {
+                    metricsServer = new MetricsServer(metrics, metricsPort);
+                    metricsServer.start();
+                    Logger.info("Metrics available at http://127.0.0.1:" + metricsPort + "/metrics");
+                } catch (IOException e) {
+                    Logger.waring("Unable to serve metrics on port " + metricsPort + ": " + e.getMessage());
+                }
+            }
+            if (metricsFile != null || "line".equals(progress)) {
+                metricsReporter = new MetricsReporter(metrics);
+                if (metricsFile != null) {
+                    metricsReporter.startDump(Paths.get(metricsFile), metricsInterval);
+                }
+                if ("line".equals(progress)) {
+                    metricsReporter.startProgress(1000);
                 }
             }
-            System.out.println();
-            nodes.forEach(this::onRecursiveNode);
         }
 
-        private @Nullable Node onSearchNode(String path, String xpath) {
+        /* Whatever the crawl throws, queued downloads are still waited for and the pools stopped. */
+        public void run() {
             try {
-                return spider.search(path, xpath);
-            } catch (IOException e) {
-                e.printStackTrace(System.err);
+                for (String resource : resources) {
+                    crawl(resource, (path, node) -> onDownload(resource, node.getUrl(), path, node.name,
+                            node.size, node.lastModified, node.getMd5(), node.getSha1()));
+                }
+            } finally {
+                finish();
             }
-            return null;
         }
 
-        private void onRecursiveNode(@NotNull Node node) {
-            onRecursiveNode(node, null);
+        /*
+         * Fills the queue with one item per resource, or with batches of files when sharding by
+         * file, then waits for the workers while reclaiming leases they let expire.
+         */
+        public void coordinate(@NotNull WorkQueue queue) throws IOException, InterruptedException {
+            if ("file".equals(shard)) {
+                for (String resource : resources) {
+                    final List<String> batch = new ArrayList<>(FILES_PER_ITEM);
+                    crawl(resource, (path, node) -> {
+                        synchronized (batch) {
+                            batch.add(String.join("\t", "file", resource, node.getUrl(), path, node.name,
+                                    Long.toString(node.size), Long.toString(node.lastModified),
+                                    String.valueOf(node.getMd5()), String.valueOf(node.getSha1())));
+                            if (batch.size() >= FILES_PER_ITEM) {
+                                put(queue, batch);
+                            }
+                        }
+                    });
+                    put(queue, batch);
+                }
+            } else {
+                for (String resource : resources) {
+                    queue.put(Collections.singletonList("resource\t" + resource));
+                }
+            }
+            queue.seal();
+            spider.shutdown();
+            Logger.info("Queue sealed, waiting for workers ...");
+            String last = "";
+            while (!queue.isFinished()) {
+                queue.reclaim(false);
+                String status = String.format("Pending: %d, Leased: %d, Done: %d, Failed: %d",
+                        queue.countPending(), queue.countLeased(), queue.countDone(), queue.countFailed());
+                if (!status.equals(last)) {
+                    Logger.message(status);
+                    last = status;
+                }
+                Thread.sleep(1000);
+            }
+            Logger.message(String.format("\nDone: %s%d%s, Failed: %s%d%s", Logger.GREEN, queue.countDone(), Logger.RESET, Logger.RED, queue.countFailed(), Logger.RESET));
+            dm.shutdown();
+            dm.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            stopMetrics();
         }
 
-        private void onRecursiveNode(@NotNull Node node, @Nullable String basePath) {
-            if (basePath == null) basePath = "";
-            Path directoryPath = PathUtils.decode(Paths.get(out, basePath, node.name));
-            if (!directoryPath.toFile().exists() && !directoryPath.toFile().mkdir()) {
-                Logger.error("Unable create directory in \"%s" + directoryPath + "\"");
-                return;
+        private void put(@NotNull WorkQueue queue, @NotNull List<String> batch) {
+            if (batch.isEmpty()) return;
+            try {
+                queue.put(batch);
+            } catch (IOException e) {
+                Logger.error("Unable to enqueue " + batch.size() + " files: " + e.getMessage());
             }
-            if (node.data instanceof List<?>) {
-                for (Node it : (List<Node>) node.data) {
-                    if (it.type == Node.TYPE_DIRECTORY) {
-                        onRecursiveNode(it, node.name);
+            batch.clear();
+        }
+
+        /*
+         * Leases items until the queue is sealed and drained. An item is acknowledged once all of
+         * its downloads settled successfully and handed back otherwise, the lease is renewed in
+         * the background for as long as that takes.
+         */
+        public void work(@NotNull WorkQueue queue) throws IOException, InterruptedException {
+            ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "lease-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            final long interval = Math.max(1000, queue.getLeaseTimeout() / 3);
+            try {
+                while (true) {
+                    WorkQueue.Lease lease = queue.lease();
+                    if (lease == null) {
+                        if (queue.isFinished()) break;
+                        Thread.sleep(1000);
+                        continue;
+                    }
+                    final Queue<CompletableFuture<DownloadResult>> futures = new ConcurrentLinkedQueue<>();
+                    final AtomicBoolean lost = new AtomicBoolean(false);
+                    /* Once another process may own the item its files must not be written here any more. */
+                    ScheduledFuture<?> renewal = heartbeat.scheduleAtFixedRate(() -> {
+                        if (!lost.get() && !lease.renew()) {
+                            lost.set(true);
+                            Logger.waring("Lease expired and was handed to another worker, cancelling its downloads.");
+                            for (CompletableFuture<DownloadResult> future : futures) {
+                                future.cancel(true);
+                            }
+                        }
+                    }, interval, interval, TimeUnit.MILLISECONDS);
+                    boolean succeeded = true;
+                    for (String line : lease.lines) {
+                        if (lost.get()) break;
+                        final String[] fields = line.split("\t");
+                        if ("resource".equals(fields[0])) {
+                            succeeded &= crawl(fields[1], (path, node) -> submit(futures, lost, onDownload(fields[1], node.getUrl(), path, node.name,
+                                    node.size, node.lastModified, node.getMd5(), node.getSha1())));
+                        } else if ("file".equals(fields[0]) && fields.length == 9) {
+                            submit(futures, lost, onDownload(fields[1], fields[2], fields[3], fields[4],
+                                    Long.parseLong(fields[5]), Long.parseLong(fields[6]),
+                                    "null".equals(fields[7]) ? null : fields[7], "null".equals(fields[8]) ? null : fields[8]));
+                        } else {
+                            Logger.error("Malformed work item \"" + line + "\"");
+                        }
+                    }
+                    for (CompletableFuture<DownloadResult> future : futures) {
+                        try {
+                            future.join();
+                        } catch (CompletionException | CancellationException e) {
+                            succeeded = false;
+                        }
+                    }
+                    renewal.cancel(false);
+                    if (lost.get()) {
+                        /* Neither acknowledged nor handed back, the item is someone else's now. */
+                        continue;
+                    }
+                    if (succeeded) {
+                        lease.ack();
                     } else {
-                        onDownload(it, directoryPath);
+                        lease.fail();
                     }
                 }
+            } finally {
+                heartbeat.shutdown();
+                finish();
             }
         }
 
-        private void onDownload(Node node, Path parent) {
-            if (node.type != Node.TYPE_FILE || !isFocus(node)) return;
-            Path filePath = PathUtils.decode(parent.resolve(node.name));
+        /* Downloads submitted after the lease was lost are cancelled right away. */
+        private static void submit(@NotNull Queue<CompletableFuture<DownloadResult>> futures, @NotNull AtomicBoolean lost,
+                                   @NotNull CompletableFuture<DownloadResult> future) {
+            futures.add(future);
+            if (lost.get()) {
+                future.cancel(true);
+            }
+        }
+
+        /* Returns false if the resource could not be listed. */
+        private boolean crawl(@NotNull String resource, @NotNull Spider.SearchListener listener) {
+            Logger.message("Searching in \"" + resource + "\" ...");
+            final AtomicInteger found = new AtomicInteger(0);
             try {
-                URL url = new URL((String) node.data);
-                if (!filePath.toFile().exists()) {
-                    dm.download(url, filePath);
-                } else {
-                    skip++;
-                    Logger.waring(filePath + " already exists, skip.");
-                }
-            } catch (MalformedURLException e) {
+                spider.search(resource, (path, node) -> {
+                    found.incrementAndGet();
+                    listener.onFile(path, node);
+                });
+            } catch (IOException e) {
                 e.printStackTrace(System.err);
-                failure.incrementAndGet();
+                return false;
+            }
+            if (found.get() > 0) {
+                System.out.printf("Found: %s%-5d%s\n", Logger.GREEN, found.get(), Logger.RESET);
+            } else {
+                Logger.waring("Sorry, no resources found in \"" + resource + "\"");
             }
+            return true;
         }
 
-        private void onStatistics() {
+        private void finish() {
+            spider.shutdown();
             dm.shutdown();
-            Logger.message(String.format("\nTotal: %s%d%s, Skip: %s%d%s, Success: %s%d%s, Failure: %s%d%s", Logger.CYAN, total.get(), Logger.RESET, Logger.YELLOW, skip, Logger.RESET, Logger.GREEN, success.get(), Logger.RESET, Logger.RED, failure.get(), Logger.RESET));
+            try {
+                dm.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dm.shutdownNow();
+            }
+            onStatistics();
         }
 
-        private int[] statistics(Node node) {
-            int[] statistics = new int[]{0, 0};
-            if (node.type == Node.TYPE_FILE) {
-                return isFocus(node) ? new int[]{1, 1} : new int[] {1, 0};
-            } else {
-                for (Node it: (List<Node>) node.data) {
-                    int[] tmp = statistics(it);
-                    statistics[0] += tmp[0];
-                    statistics[1] += tmp[1];
-                }
+        private List<ListingBackend> newListingBackends() {
+            PageFetcher fetcher = new PageFetcher(client, newListingCache());
+            fetcher.setMetrics(metrics);
+            List<ListingBackend> backends = new ArrayList<>();
+            if ("metadata".equals(listing)) {
+                backends.add(new MetadataListingBackend(fetcher));
+            }
+            backends.add(new HtmlListingBackend(DOWNLOAD_URL, fetcher));
+            return backends;
+        }
+
+        private static @Nullable Manifest newManifest() {
+            if (!manifest) return null;
+            Path file = manifestFile != null ? Paths.get(manifestFile) : Paths.get(out, ".archive-manifest");
+            try {
+                return new Manifest(file);
+            } catch (IOException e) {
+                Logger.waring("Unable to open manifest \"" + file + "\", checksums will not be recorded.");
+                return null;
             }
-            return statistics;
         }
 
-        private boolean isFocus(@NotNull Node node) {
-            if (focus == null || focus.length == 0) return true;
-            String ext = PathUtils.getExtensionName(PathUtils.decode(node.name));
-            if (!ext.isEmpty()) {
-                ext = ext.substring(1);
+        private static @Nullable DedupIndex newDedupIndex() {
+            if (!dedup) return null;
+            Path directory = dedupDir != null ? Paths.get(dedupDir) : Paths.get(out, ".archive-objects");
+            try {
+                return new DedupIndex(directory);
+            } catch (IOException e) {
+                Logger.waring("Unable to open dedup index in \"" + directory + "\", deduplication disabled.");
+                return null;
+            }
+        }
+
+        private static @Nullable ListingCache newListingCache() {
+            if (!cache) return null;
+            Path directory = cacheDir != null ? Paths.get(cacheDir) : Paths.get(out, ".archive-cache");
+            try {
+                return new ListingCache(directory, cacheMaxAge, cacheMaxSize);
+            } catch (IOException e) {
+                Logger.waring("Unable to open listing cache in \"" + directory + "\", caching disabled.");
+                return null;
             }
-            for (String it: focus) {
-                if (it.toLowerCase(Locale.ROOT).equals(ext.toLowerCase(Locale.ROOT))) {
-                    return true;
+        }
+
+        /* path is the encoded directory relative to the output directory, skipped files complete with null. */
+        private CompletableFuture<DownloadResult> onDownload(String resource, String url, String path, String name,
+                                                                       long size, long lastModified, @Nullable String md5, @Nullable String sha1) {
+            total.incrementAndGet();
+            Path parent = PathUtils.decode(Paths.get(out, path));
+            Path filePath = PathUtils.decode(parent.resolve(name));
+            try {
+                DownloadRequest request = new DownloadRequest(new URL(url), filePath, resource, size, lastModified, md5, sha1);
+                SyncChecker.Decision decision;
+                if (sync) {
+                    decision = syncChecker.check(request);
+                } else {
+                    decision = filePath.toFile().exists() ? SyncChecker.Decision.SKIP : SyncChecker.Decision.NEW;
                 }
+                switch (decision) {
+                    case SKIP:
+                        skip.incrementAndGet();
+                        if (!sync) {
+                            Logger.waring(filePath + " already exists, skip.");
+                        }
+                        return CompletableFuture.completedFuture(null);
+                    case UPDATE:
+                        updated.incrementAndGet();
+                        break;
+                    default:
+                        created.incrementAndGet();
+                }
+                Files.createDirectories(parent);
+                /* The manager's own future is returned so cancelling it reaches the download. */
+                final CompletableFuture<DownloadResult> future = dm.download(request);
+                future.whenComplete((result, e) -> {
+                    if (e == null) {
+                        success.incrementAndGet();
+                    } else {
+                        failure.incrementAndGet();
+                    }
+                });
+                return future;
+            } catch (MalformedURLException e) {
+                e.printStackTrace(System.err);
+                failure.incrementAndGet();
+                return CompletableFuture.failedFuture(e);
+            } catch (IOException e) {
+                Logger.error("Unable create directory in \"" + parent + "\"");
+                failure.incrementAndGet();
+                return CompletableFuture.failedFuture(e);
             }
-            return false;
         }
 
-        @Override
-        public void onDownloadFailure(int jobId, @Nullable String filename, @Nullable URL url, Exception e) {
-            failure.incrementAndGet();
+        private void stopMetrics() {
+            if (metricsReporter != null) {
+                metricsReporter.stop();
+            }
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
+
+        private void onStatistics() {
+            stopMetrics();
+            Logger.message(String.format("\nTotal: %s%d%s, Skip: %s%d%s, Success: %s%d%s, Failure: %s%d%s", Logger.CYAN, total.get(), Logger.RESET, Logger.YELLOW, skip.get(), Logger.RESET, Logger.GREEN, success.get(), Logger.RESET, Logger.RED, failure.get(), Logger.RESET));
+            if (maxJobs > jobs) {
+                Logger.message(String.format("Concurrency: %s%d%s", Logger.CYAN, dm.getConcurrency(), Logger.RESET));
+            }
+            if (sync) {
+                Logger.message(String.format("New: %s%d%s, Updated: %s%d%s, Unchanged: %s%d%s", Logger.GREEN, created.get(), Logger.RESET, Logger.CYAN, updated.get(), Logger.RESET, Logger.YELLOW, skip.get(), Logger.RESET));
+            }
         }
 
         @Override
-        public void onDownloadSuccessful(int jobId, @Nullable String filename, @Nullable URL url) {
-            success.incrementAndGet();
+        public void onDownloadRetry(int jobId, @Nullable String filename, @Nullable URL url, int retry, long delay, Exception e) {
+            Logger.waring(String.format("Retry %d for \"%s\" in %.1fs (%s)", retry, filename, delay / 1000.0, e.getMessage()));
         }
 
         @Override
-        public void onJobCompleted(int jobId) {
-            if (success.get() + failure.get() + skip == total.get()) {
-                onStatistics();
-            }
+        public void onHostThrottled(@NotNull String host, long pause) {
+            Logger.waring(String.format("%s is throttling, pausing new requests to it for %.1fs", host, pause / 1000.0));
         }
     }
 
@@ -154,15 +446,41 @@ public class Main {
         parseArgs(args);
         if (checkArgs()) {
             final Kernel kernel = new Kernel();
-            kernel.run();
+            if (coordinator == null && worker == null) {
+                kernel.run();
+                return;
+            }
+            try {
+                WorkQueue queue = new WorkQueue(Paths.get(coordinator != null ? coordinator : worker), leaseTimeout, leaseAttempts);
+                if (coordinator != null) {
+                    kernel.coordinate(queue);
+                } else {
+                    kernel.work(queue);
+                }
+            } catch (IOException e) {
+                Logger.error("Work queue failed: " + e.getMessage());
+                System.exit(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
     private static boolean checkArgs() {
-        if (resources.isEmpty()) {
+        if (coordinator != null && worker != null) {
+            Logger.error("A process is either the coordinator or a worker, not both.");
+            return false;
+        }
+        if (resources.isEmpty() && worker == null) {
             Logger.waring("No resource specified, do nothing.");
             return false;
         }
+        try {
+            filter = Filter.compile(String.join(" ", filters));
+        } catch (IllegalArgumentException e) {
+            Logger.error("Invalid filter: " + e.getMessage());
+            return false;
+        }
         File outputDirectory = Paths.get(out).toFile();
         if (!outputDirectory.exists() && !outputDirectory.mkdir()) {
             Logger.error("Unable create output directory in \"" + outputDirectory.getAbsolutePath() + "\"");
@@ -174,7 +492,7 @@ public class Main {
     private static void parseArgs(String[] args) {
         int index = 0;
         while (index < args.length) {
-            final String[] option = args[index].split("=");
+            final String[] option = args[index].split("=", 2);
             switch (option[0]) {
                 case "--add-resource":
                     resources.add(PathUtils.addSeparate(option[1]));
@@ -197,13 +515,130 @@ public class Main {
                     out = option[1];
                     break;
                 case "--focus":
-                    focus = option[1].split(",");
+                    filters.add("ext:" + option[1]);
+                    break;
+                case "--filter":
+                    filters.add(option[1]);
                     break;
                 case "--http-proxy":
                     proxy = parseProxy(option[1]);
                     break;
                 case "--jobs":
-                    jobs = Integer.parseInt(option[1]);
+                    if ("auto".equals(option[1])) {
+                        jobs = 1;
+                        maxJobs = 32;
+                    } else if (option[1].contains("-")) {
+                        jobs = Integer.parseInt(option[1].substring(0, option[1].indexOf('-')));
+                        maxJobs = Integer.parseInt(option[1].substring(option[1].indexOf('-') + 1));
+                    } else {
+                        jobs = maxJobs = Integer.parseInt(option[1]);
+                    }
+                    break;
+                case "--queue-capacity":
+                    queueCapacity = Integer.parseInt(option[1]);
+                    break;
+                case "--schedule":
+                    schedule = SchedulingPolicy.parse(option[1]);
+                    break;
+                case "--virtual-threads":
+                    virtualThreads = true;
+                    break;
+                case "--sync":
+                    sync = true;
+                    break;
+                case "--crawl-jobs":
+                    crawlJobs = Integer.parseInt(option[1]);
+                    break;
+                case "--listing":
+                    if (!"metadata".equals(option[1]) && !"html".equals(option[1])) {
+                        throw new RuntimeException("Unknown listing backend \"" + option[1] + "\"");
+                    }
+                    listing = option[1];
+                    break;
+                case "--cache-dir":
+                    cacheDir = option[1];
+                    break;
+                case "--cache-max-age":
+                    cacheMaxAge = parseDuration(option[1]);
+                    break;
+                case "--cache-max-size":
+                    cacheMaxSize = ByteFormatter.parse(option[1]);
+                    break;
+                case "--no-cache":
+                    cache = false;
+                    break;
+                case "--manifest":
+                    manifestFile = option[1];
+                    break;
+                case "--no-manifest":
+                    manifest = false;
+                    break;
+                case "--no-verify":
+                    verify = false;
+                    break;
+                case "--dedup":
+                    dedup = true;
+                    break;
+                case "--dedup-dir":
+                    dedup = true;
+                    dedupDir = option[1];
+                    break;
+                case "--retries":
+                    retries = Integer.parseInt(option[1]);
+                    break;
+                case "--retry-delay":
+                    retryDelay = parseDuration(option[1]);
+                    break;
+                case "--max-rate":
+                    maxRate = ByteFormatter.parse(option[1]);
+                    break;
+                case "--max-job-rate":
+                    maxJobRate = ByteFormatter.parse(option[1]);
+                    break;
+                case "--rate-schedule":
+                    rateSchedule = RateLimiter.parseSchedule(option[1]);
+                    break;
+                case "--progress":
+                    if (!"bars".equals(option[1]) && !"line".equals(option[1]) && !"none".equals(option[1])) {
+                        throw new RuntimeException("Unknown progress mode \"" + option[1] + "\"");
+                    }
+                    progress = option[1];
+                    break;
+                case "--metrics-port":
+                    metricsPort = Integer.parseInt(option[1]);
+                    break;
+                case "--metrics-file":
+                    metricsFile = option[1];
+                    break;
+                case "--metrics-interval":
+                    metricsInterval = parseDuration(option[1]);
+                    break;
+                case "--coordinator":
+                    coordinator = option[1];
+                    break;
+                case "--worker":
+                    worker = option[1];
+                    break;
+                case "--shard":
+                    if (!"resource".equals(option[1]) && !"file".equals(option[1])) {
+                        throw new RuntimeException("Unknown shard unit \"" + option[1] + "\"");
+                    }
+                    shard = option[1];
+                    break;
+                case "--lease-timeout":
+                    leaseTimeout = parseDuration(option[1]);
+                    break;
+                case "--lease-attempts":
+                    leaseAttempts = Integer.parseInt(option[1]);
+                    break;
+                case "--segments":
+                    segments = Integer.parseInt(option[1]);
+                    break;
+                case "--segment-threshold":
+                    segmentThreshold = ByteFormatter.parse(option[1]);
+                    break;
+                case "--resolve-ttl":
+                    resolveTtl = parseDuration(option[1]);
                     break;
                 default:
                     throw new RuntimeException("Unknown option \"" + option[0] + "\"");
@@ -212,6 +647,16 @@ public class Main {
         }
     }
 
+    private static long parseDuration(String str) {
+        final String units = "smhd";
+        final long[] scales = {1000L, 60 * 1000L, 3600 * 1000L, 24 * 3600 * 1000L};
+        int index = units.indexOf(Character.toLowerCase(str.charAt(str.length() - 1)));
+        if (index == -1) {
+            return Long.parseLong(str) * 1000L;
+        }
+        return Long.parseLong(str.substring(0, str.length() - 1)) * scales[index];
+    }
+
     private static Proxy parseProxy(String str) {
         try {
             URL url = new URL(str);
@@ -0,0 +1,65 @@
+package org.archive.spider.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class DirectoryNode extends Node {
+    /* Only set on the root, every other URL is resolved against it. */
+    private final String url;
+    private List<Node> children = Collections.emptyList();
+
+    /* A search root, url is the full URL of the directory ending with "/". */
+    public DirectoryNode(@NotNull String name, @NotNull String url) {
+        super(name, null);
+        this.url = url;
+    }
+
+    public DirectoryNode(@NotNull String name, @NotNull DirectoryNode parent) {
+        super(name, parent);
+        this.url = null;
+    }
+
+    @Override
+    public int getType() {
+        return TYPE_DIRECTORY;
+    }
+
+    public List<Node> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    void add(@NotNull Node child) {
+        if (!(children instanceof ArrayList)) {
+            children = new ArrayList<>();
+        }
+        children.add(child);
+    }
+
+    void trim() {
+        if (children instanceof ArrayList) {
+            ((ArrayList<Node>) children).trimToSize();
+        }
+    }
+
+    @Override
+    void appendUrl(@NotNull StringBuilder builder) {
+        if (url != null) {
+            builder.append(url);
+            return;
+        }
+        super.appendUrl(builder);
+        builder.append('/');
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryNode{" +
+                "name='" + name + '\'' +
+                ", children=" + children.size() +
+                '}';
+    }
+}
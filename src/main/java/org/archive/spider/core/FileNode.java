@@ -0,0 +1,50 @@
+package org.archive.spider.core;
+
+import org.archive.spider.util.DigestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public final class FileNode extends Node {
+    /* -1 or null when the listing did not say. */
+    public final long size;
+    public final long lastModified;
+    private final byte[] md5;
+    private final byte[] sha1;
+
+    public FileNode(@NotNull String name, @NotNull DirectoryNode parent) {
+        this(name, parent, -1, -1, null, null);
+    }
+
+    public FileNode(@NotNull String name, @NotNull DirectoryNode parent, long size, long lastModified, @Nullable String md5, @Nullable String sha1) {
+        super(name, parent);
+        this.size = size;
+        this.lastModified = lastModified;
+        this.md5 = md5 == null ? null : DigestUtils.fromHex(md5);
+        this.sha1 = sha1 == null ? null : DigestUtils.fromHex(sha1);
+    }
+
+    @Override
+    public int getType() {
+        return TYPE_FILE;
+    }
+
+    public @Nullable String getMd5() {
+        return md5 == null ? null : DigestUtils.toHex(md5);
+    }
+
+    public @Nullable String getSha1() {
+        return sha1 == null ? null : DigestUtils.toHex(sha1);
+    }
+
+    @Override
+    public String toString() {
+        return "FileNode{" +
+                "name='" + name + '\'' +
+                ", url=" + getUrl() +
+                ", size=" + size +
+                ", lastModified=" + lastModified +
+                ", md5='" + getMd5() + '\'' +
+                ", sha1='" + getSha1() + '\'' +
+                '}';
+    }
+}
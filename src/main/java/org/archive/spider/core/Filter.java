@@ -0,0 +1,279 @@
+package org.archive.spider.core;
+
+import org.archive.spider.util.ByteFormatter;
+import org.archive.spider.util.PathUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+ * Selection of files compiled once from an expression and evaluated by the crawl for every
+ * listed entry. Terms are separated by whitespace, a leading "!" turns a term into an exclusion:
+ *
+ *   ext:mp3,flac          file extension, case-insensitive
+ *   glob:disc?/*.mp3      glob on the path below the resource, or on the name if it has no "/"
+ *   regex:^cd[0-9]+/      regex searched in the path below the resource
+ *   size:1M-50M           size range, either bound may be left out ("size:-10M"), ranges intersect
+ *   dir:disc1             only files below matching directories
+ *   !dir:thumbs           never enter matching directories
+ *
+ * Included kinds must all match, alternatives within a kind are a list for "ext:", a "{a,b}"
+ * group or simply another term for the others. Paths are matched decoded, relative to the
+ * searched resource and without a trailing "/". Directories that are excluded, or that no
+ * "dir:" term can match at or below, are not listed at all. HTML listings only show rounded
+ * sizes, against those a size bound is as precise as the page.
+ */
+public final class Filter {
+
+    private final Set<String> extensions = new HashSet<>();
+    private final Set<String> excludedExtensions = new HashSet<>();
+    private final List<Pattern> globs = new ArrayList<>();
+    private final List<Pattern> excludedGlobs = new ArrayList<>();
+    private final List<Pattern> regexes = new ArrayList<>();
+    private final List<Pattern> excludedRegexes = new ArrayList<>();
+    private final List<Pattern> directories = new ArrayList<>();
+    private final List<Pattern[]> directorySegments = new ArrayList<>();
+    private final List<Pattern> excludedDirectories = new ArrayList<>();
+    private long minSize = -1;
+    private long maxSize = -1;
+
+    private Filter() {}
+
+    public static Filter compile(@NotNull String expression) {
+        Filter filter = new Filter();
+        for (String term : expression.trim().split("\\s+")) {
+            if (term.isEmpty()) continue;
+            final boolean exclude = term.startsWith("!");
+            final String it = exclude ? term.substring(1) : term;
+            final int colon = it.indexOf(':');
+            if (colon == -1 || colon == it.length() - 1) {
+                throw new IllegalArgumentException("Invalid filter term \"" + term + "\"");
+            }
+            final String value = it.substring(colon + 1);
+            switch (it.substring(0, colon)) {
+                case "ext":
+                    for (String ext : value.split(",")) {
+                        if (ext.startsWith(".")) ext = ext.substring(1);
+                        if (ext.isEmpty()) continue;
+                        (exclude ? filter.excludedExtensions : filter.extensions).add(ext.toLowerCase(Locale.ROOT));
+                    }
+                    break;
+                case "glob":
+                    final String regex = value.contains("/") ? toRegex(value) : "(.*/)?" + toRegex(value);
+                    (exclude ? filter.excludedGlobs : filter.globs).add(Pattern.compile(regex));
+                    break;
+                case "regex":
+                    (exclude ? filter.excludedRegexes : filter.regexes).add(Pattern.compile(value));
+                    break;
+                case "size":
+                    if (exclude) {
+                        throw new IllegalArgumentException("Size ranges can not be excluded, \"" + term + "\"");
+                    }
+                    final int dash = value.indexOf('-');
+                    final String min = dash == -1 ? value : value.substring(0, dash);
+                    final String max = dash == -1 ? "" : value.substring(dash + 1);
+                    /* Several ranges narrow each other down. */
+                    if (!min.isEmpty()) {
+                        filter.minSize = Math.max(filter.minSize, ByteFormatter.parse(min));
+                    }
+                    if (!max.isEmpty()) {
+                        final long bound = ByteFormatter.parse(max);
+                        filter.maxSize = filter.maxSize < 0 ? bound : Math.min(filter.maxSize, bound);
+                    }
+                    if (filter.maxSize >= 0 && filter.minSize > filter.maxSize) {
+                        throw new IllegalArgumentException("No size is left in range, \"" + term + "\"");
+                    }
+                    break;
+                case "dir":
+                    String dir = trimSeparators(value);
+                    if (dir.isEmpty()) {
+                        throw new IllegalArgumentException("Invalid filter term \"" + term + "\"");
+                    }
+                    /* A pattern without "/" names a directory at any depth. */
+                    if (!dir.contains("/")) dir = "**/" + dir;
+                    /* A match covers everything below it as well. */
+                    final Pattern pattern = Pattern.compile(toRegex(dir) + "(/.*)?");
+                    if (exclude) {
+                        filter.excludedDirectories.add(pattern);
+                    } else {
+                        filter.directories.add(pattern);
+                        filter.directorySegments.add(toSegments(dir));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown filter term \"" + term + "\"");
+            }
+        }
+        return filter;
+    }
+
+    /* The filter "--focus" has always meant, files with any of the given extensions. */
+    public static Filter ofExtensions(@NotNull String... extensions) {
+        return compile("ext:" + String.join(",", extensions));
+    }
+
+    public boolean isEmpty() {
+        return extensions.isEmpty() && excludedExtensions.isEmpty() && globs.isEmpty() && excludedGlobs.isEmpty()
+                && regexes.isEmpty() && excludedRegexes.isEmpty() && directories.isEmpty()
+                && excludedDirectories.isEmpty() && minSize < 0 && maxSize < 0;
+    }
+
+    /* Whether the crawl should list the directory, path as in the listing ("disc1/", encoded). */
+    public boolean acceptDirectory(@NotNull String path) {
+        if (directories.isEmpty() && excludedDirectories.isEmpty()) return true;
+        final String decoded = trimSeparators(decode(path));
+        if (decoded.isEmpty()) return true;
+        for (Pattern it : excludedDirectories) {
+            if (it.matcher(decoded).matches()) return false;
+        }
+        if (directories.isEmpty()) return true;
+        final String[] segments = decoded.split("/");
+        for (Pattern[] it : directorySegments) {
+            if (mayContain(it, 0, segments, 0)) return true;
+        }
+        return false;
+    }
+
+    /* Path of the file below the resource as listed ("disc1/01%20Intro.mp3"), size -1 if unknown. */
+    public boolean acceptFile(@NotNull String path, long size) {
+        if (size >= 0 && (minSize >= 0 && size < minSize || maxSize >= 0 && size > maxSize)) {
+            return false;
+        }
+        if (!extensions.isEmpty() || !excludedExtensions.isEmpty()) {
+            final String ext = getExtension(path);
+            if (!extensions.isEmpty() && !extensions.contains(ext)) return false;
+            if (excludedExtensions.contains(ext)) return false;
+        }
+        if (globs.isEmpty() && excludedGlobs.isEmpty() && regexes.isEmpty() && excludedRegexes.isEmpty()
+                && directories.isEmpty() && excludedDirectories.isEmpty()) {
+            return true;
+        }
+        final String decoded = decode(path);
+        if (!directories.isEmpty() || !excludedDirectories.isEmpty()) {
+            final int index = decoded.lastIndexOf('/');
+            final String directory = index == -1 ? "" : decoded.substring(0, index);
+            if (!matchesDirectory(directory)) return false;
+        }
+        if (!globs.isEmpty() && !find(globs, decoded, true)) return false;
+        if (find(excludedGlobs, decoded, true)) return false;
+        if (!regexes.isEmpty() && !find(regexes, decoded, false)) return false;
+        return !find(excludedRegexes, decoded, false);
+    }
+
+    private boolean matchesDirectory(@NotNull String directory) {
+        for (Pattern it : excludedDirectories) {
+            if (it.matcher(directory).matches()) return false;
+        }
+        if (directories.isEmpty()) return true;
+        return !directory.isEmpty() && find(directories, directory, true);
+    }
+
+    private static boolean find(@NotNull List<Pattern> patterns, @NotNull String path, boolean whole) {
+        for (Pattern it : patterns) {
+            if (whole ? it.matcher(path).matches() : it.matcher(path).find()) return true;
+        }
+        return false;
+    }
+
+    /*
+     * True if a path matching the pattern can be this directory, lie below it, or contain it.
+     * Only the first case lets files through, the others keep the way to them open.
+     */
+    private static boolean mayContain(Pattern[] pattern, int i, String[] segments, int j) {
+        if (i == pattern.length || j == segments.length) return true;
+        if (pattern[i] == null) {
+            return mayContain(pattern, i + 1, segments, j) || mayContain(pattern, i, segments, j + 1);
+        }
+        return pattern[i].matcher(segments[j]).matches() && mayContain(pattern, i + 1, segments, j + 1);
+    }
+
+    /* Extensions are plain ASCII in practice, the name is only decoded when it has escapes. */
+    private static String getExtension(@NotNull String path) {
+        final int dot = path.lastIndexOf('.');
+        if (dot == -1 || path.indexOf('/', dot) != -1) return "";
+        String ext = path.substring(dot + 1);
+        if (ext.indexOf('%') != -1) ext = PathUtils.decode(ext);
+        return ext.toLowerCase(Locale.ROOT);
+    }
+
+    private static String decode(@NotNull String path) {
+        return path.indexOf('%') == -1 && path.indexOf('+') == -1 ? path : PathUtils.decode(path);
+    }
+
+    private static String trimSeparators(@NotNull String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') start++;
+        while (end > start && path.charAt(end - 1) == '/') end--;
+        return path.substring(start, end);
+    }
+
+    private static Pattern[] toSegments(@NotNull String glob) {
+        final String[] parts = glob.split("/");
+        Pattern[] segments = new Pattern[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            segments[i] = "**".equals(parts[i]) ? null : Pattern.compile(toRegex(parts[i]));
+        }
+        return segments;
+    }
+
+    /* "*" and "?" stay within one path segment, "**" crosses them, "{a,b}" and "[a-z]" as usual. */
+    static String toRegex(@NotNull String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 16);
+        boolean group = false;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        i++;
+                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+                            i++;
+                            regex.append("(.*/)?");
+                        } else {
+                            regex.append(".*");
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '{':
+                    group = true;
+                    regex.append("(?:");
+                    break;
+                case '}':
+                    group = false;
+                    regex.append(')');
+                    break;
+                case ',':
+                    regex.append(group ? "|" : ",");
+                    break;
+                case '[':
+                    final int close = glob.indexOf(']', i + 1);
+                    if (close == -1) {
+                        regex.append("\\[");
+                    } else {
+                        String set = glob.substring(i + 1, close).replace("\\", "\\\\");
+                        if (set.startsWith("!")) set = "^" + set.substring(1);
+                        regex.append('[').append(set).append(']');
+                        i = close;
+                    }
+                    break;
+                default:
+                    if ("\\.^$+()|]".indexOf(c) != -1) {
+                        regex.append('\\');
+                    }
+                    regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+}
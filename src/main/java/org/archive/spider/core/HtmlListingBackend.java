@@ -0,0 +1,74 @@
+package org.archive.spider.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Lists archive.org directory pages. Pages laid out the default way are scanned in place,
+ * the XPath over a full Jsoup document is only evaluated for a custom XPath or for pages the
+ * scanner does not recognise.
+ */
+public class HtmlListingBackend implements ListingBackend {
+
+    public static final String DEFAULT_XPATH = "//*[@id=\"maincontent\"]/div/div/pre/table/tbody/tr[position()>1]/td/a[1]";
+
+    private final String baseUrl;
+    private final String xpath;
+    private final PageFetcher fetcher;
+
+    public HtmlListingBackend(@NotNull String baseUrl, @Nullable Proxy proxy) {
+        this(baseUrl, DEFAULT_XPATH, new PageFetcher(proxy));
+    }
+
+    public HtmlListingBackend(@NotNull String baseUrl, @NotNull PageFetcher fetcher) {
+        this(baseUrl, DEFAULT_XPATH, fetcher);
+    }
+
+    public HtmlListingBackend(@NotNull String baseUrl, @NotNull String xpath, @NotNull PageFetcher fetcher) {
+        this.baseUrl = baseUrl;
+        this.xpath = xpath;
+        this.fetcher = fetcher;
+    }
+
+    @Override
+    public @NotNull List<ListingEntry> list(@NotNull String path) throws IOException {
+        final String url = String.format("%s%s", baseUrl, path);
+        return parse(fetcher.fetch(url), url);
+    }
+
+    public @NotNull List<ListingEntry> parse(@NotNull InputStream in, @NotNull String url) throws IOException {
+        return parse(in.readAllBytes(), url);
+    }
+
+    public @NotNull List<ListingEntry> parse(byte @NotNull [] page, @NotNull String url) throws IOException {
+        if (DEFAULT_XPATH.equals(xpath)) {
+            List<ListingEntry> entries = ListingScanner.scan(page);
+            if (entries != null) {
+                return entries;
+            }
+        }
+        return parseDocument(page, url);
+    }
+
+    /* The full parse, kept for custom XPaths and pages the scanner gives up on. */
+    public @NotNull List<ListingEntry> parseDocument(byte @NotNull [] page, @NotNull String url) throws IOException {
+        Document document = Jsoup.parse(new ByteArrayInputStream(page), null, url);
+        Elements elements = document.selectXpath(xpath);
+        List<ListingEntry> entries = new ArrayList<>(elements.size());
+        for (Element element: elements) {
+            entries.add(new ListingEntry(element.attr("href")));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,15 @@
+package org.archive.spider.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface ListingBackend {
+    /*
+     * Lists the directory at path (relative to the download root, ending with '/').
+     * A backend may return files of nested directories directly, with hrefs such as
+     * "disc1/01.flac", in which case the directories themselves are not listed.
+     */
+    @NotNull List<ListingEntry> list(@NotNull String path) throws IOException;
+}
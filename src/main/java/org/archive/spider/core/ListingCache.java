@@ -0,0 +1,153 @@
+package org.archive.spider.core;
+
+import org.archive.spider.util.DigestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Listing pages keyed by URL, one gzip compressed file per page next to the validators
+ * it was served with. The file's mtime is the time it was last fetched or revalidated.
+ */
+public class ListingCache {
+
+    private static final int MAGIC = 0x41444c43;
+    private static final String SUFFIX = ".cache";
+
+    private final Path directory;
+    private final long maxAge;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong(0);
+
+    public ListingCache(@NotNull Path directory, long maxAge, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+        Files.createDirectories(directory);
+        evict();
+    }
+
+    public @Nullable Entry get(@NotNull String url) {
+        Path path = resolve(url);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (isExpired(Files.getLastModifiedTime(path).toMillis()) || in.readInt() != MAGIC || !url.equals(in.readUTF())) {
+                return null;
+            }
+            String etag = in.readUTF();
+            String lastModified = in.readUTF();
+            byte[] body;
+            try (InputStream gzip = new GZIPInputStream(in)) {
+                body = gzip.readAllBytes();
+            }
+            return new Entry(etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified, body);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void put(@NotNull String url, @NotNull Entry entry) throws IOException {
+        Path path = resolve(url);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp" + Thread.currentThread().getId());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(url);
+            out.writeUTF(entry.etag == null ? "" : entry.etag);
+            out.writeUTF(entry.lastModified == null ? "" : entry.lastModified);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(entry.body);
+            }
+        }
+        /* What a replaced entry took up is given back, not counted twice. */
+        long replaced;
+        try {
+            replaced = Files.size(path);
+        } catch (IOException e) {
+            replaced = 0;
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        if (size.addAndGet(Files.size(path) - replaced) > maxSize) {
+            evict();
+        }
+    }
+
+    /* Marks an entry as fresh again after the server answered 304 Not Modified. */
+    public void touch(@NotNull String url) {
+        try {
+            Files.setLastModifiedTime(resolve(url), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+        }
+    }
+
+    /* Drops entries older than maxAge, then the least recently fetched ones until below maxSize. */
+    public synchronized void evict() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        List<long[]> alive = new ArrayList<>(paths.size());
+        List<Path> alivePaths = new ArrayList<>(paths.size());
+        long total = 0;
+        for (Path path : paths) {
+            long modified;
+            long length;
+            /* Entries replaced or removed while scanning are simply gone from the count. */
+            try {
+                modified = Files.getLastModifiedTime(path).toMillis();
+                if (isExpired(modified)) {
+                    Files.deleteIfExists(path);
+                    continue;
+                }
+                length = Files.size(path);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            alive.add(new long[]{modified, length, alivePaths.size()});
+            alivePaths.add(path);
+            total += length;
+        }
+        if (total > maxSize) {
+            alive.sort(Comparator.comparingLong(it -> it[0]));
+            for (long[] it : alive) {
+                if (total <= maxSize) break;
+                Files.deleteIfExists(alivePaths.get((int) it[2]));
+                total -= it[1];
+            }
+        }
+        size.set(total);
+    }
+
+    private boolean isExpired(long modified) {
+        return System.currentTimeMillis() - modified > maxAge;
+    }
+
+    private Path resolve(@NotNull String url) {
+        byte[] hash = DigestUtils.newDigest("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(DigestUtils.toHex(hash) + SUFFIX);
+    }
+
+    public static class Entry {
+        public final String etag;
+        public final String lastModified;
+        public final byte[] body;
+
+        public Entry(@Nullable String etag, @Nullable String lastModified, byte @NotNull [] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.archive.spider.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public class ListingEntry {
+    /* Relative to the listed directory and still URL encoded, directories end with '/'. */
+    public final String href;
+    public final long size;
+    public final long lastModified;
+    public final String md5;
+    public final String sha1;
+    /* Size and date as rounded for display ("46.3M"), good for filtering but not for comparing. */
+    public final boolean approximate;
+
+    public ListingEntry(@NotNull String href) {
+        this(href, -1, -1, null, null);
+    }
+
+    public ListingEntry(@NotNull String href, long size, long lastModified, @Nullable String md5, @Nullable String sha1) {
+        this(href, size, lastModified, md5, sha1, false);
+    }
+
+    public ListingEntry(@NotNull String href, long size, long lastModified, @Nullable String md5, @Nullable String sha1, boolean approximate) {
+        this.href = href;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.md5 = md5;
+        this.sha1 = sha1;
+        this.approximate = approximate;
+    }
+}
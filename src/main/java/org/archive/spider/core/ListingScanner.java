@@ -0,0 +1,248 @@
+package org.archive.spider.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jsoup.parser.Parser;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Single forward pass over the raw bytes of an archive.org directory listing, picking the
+ * first link, the date and the size out of every table row after the parent directory one:
+ *
+ *   <tr><td><a href="01%20Intro.mp3">01 Intro.mp3</a></td><td>07-Aug-2020 12:38</td><td>46.3M</td></tr>
+ *
+ * No DOM is built and nothing but the href is copied out of the page. The scan starts inside
+ * the "maincontent" container the default XPath is anchored on. A rounded size like "46.3M"
+ * is reported as approximate together with its date, plain byte counts as exact. Anything not
+ * shaped like that table yields null so the caller can fall back to a full parse.
+ */
+final class ListingScanner {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd-MMM-yyyy HH:mm", Locale.ENGLISH);
+
+    private final byte[] page;
+    private final int end;
+    /* Whether the size parsed last was rounded. */
+    private boolean approximate;
+
+    private ListingScanner(byte @NotNull [] page) {
+        this.page = page;
+        this.end = page.length;
+    }
+
+    static @Nullable List<ListingEntry> scan(byte @NotNull [] page) {
+        return new ListingScanner(page).scan();
+    }
+
+    private @Nullable List<ListingEntry> scan() {
+        final int container = findId("maincontent");
+        if (container == -1) return null;
+        final int body = findTag("<tbody", container, end);
+        if (body == -1) return null;
+        final int bodyEnd = findTag("</tbody", body, end);
+        if (bodyEnd == -1) return null;
+        List<ListingEntry> entries = new ArrayList<>();
+        int position = body;
+        boolean first = true;
+        while (true) {
+            final int row = findTag("<tr", position, bodyEnd);
+            if (row == -1) break;
+            int rowEnd = findTag("</tr", row, bodyEnd);
+            if (rowEnd == -1) rowEnd = bodyEnd;
+            position = rowEnd;
+            if (first) {
+                first = false;
+                continue;
+            }
+            final ListingEntry entry = scanRow(row, rowEnd);
+            if (entry == null) return null;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private @Nullable ListingEntry scanRow(int from, int to) {
+        final int cell = findTag("<td", from, to);
+        if (cell == -1) return null;
+        final int link = findTag("<a", cell, to);
+        if (link == -1) return null;
+        final int tagEnd = indexOf('>', link, to);
+        if (tagEnd == -1) return null;
+        final String href = getAttribute("href", link, tagEnd);
+        if (href == null) return null;
+        final int dateCell = findTag("<td", tagEnd, to);
+        final int sizeCell = dateCell == -1 ? -1 : findTag("<td", dateCell + 3, to);
+        if (sizeCell == -1) {
+            return new ListingEntry(href);
+        }
+        final int start = indexOf('>', sizeCell, to) + 1;
+        final long size = start == 0 ? -1 : parseSize(start, to);
+        if (size < 0) {
+            return new ListingEntry(href);
+        }
+        return new ListingEntry(href, size, parseDate(dateCell, to), null, null, approximate);
+    }
+
+    private @Nullable String getAttribute(@NotNull String name, int from, int to) {
+        int index = find(name, from, to);
+        while (index != -1) {
+            int it = index + name.length();
+            while (it < to && page[it] == ' ') it++;
+            if (isWordBoundary(index - 1) && it < to && page[it] == '=') {
+                it++;
+                while (it < to && page[it] == ' ') it++;
+                if (it >= to) return null;
+                final byte quote = page[it];
+                int start = it;
+                int stop;
+                if (quote == '"' || quote == '\'') {
+                    start++;
+                    stop = indexOf(quote, start, to);
+                    if (stop == -1) return null;
+                } else {
+                    stop = start;
+                    while (stop < to && page[stop] != ' ' && page[stop] != '>') stop++;
+                }
+                final String value = new String(page, start, stop - start, StandardCharsets.UTF_8);
+                return value.indexOf('&') == -1 ? value : Parser.unescapeEntities(value, true);
+            }
+            index = find(name, index + name.length(), to);
+        }
+        return null;
+    }
+
+    /*
+     * "123456" in bytes or "46.3M" in binary units, -1 for "-" or anything else. Sets approximate
+     * when a unit was given, the page rounds those to one decimal.
+     */
+    private long parseSize(int start, int to) {
+        approximate = false;
+        long integer = 0;
+        long fraction = 0;
+        long scale = 1;
+        int digits = 0;
+        boolean point = false;
+        int i = start;
+        while (i < to && isSpace(page[i])) i++;
+        for (; i < to; i++) {
+            final byte c = page[i];
+            if (c >= '0' && c <= '9') {
+                if (point) {
+                    if (scale >= 1_000_000_000L) continue;
+                    fraction = fraction * 10 + (c - '0');
+                    scale *= 10;
+                } else {
+                    if (integer > Long.MAX_VALUE / 10 - 10) return -1;
+                    integer = integer * 10 + (c - '0');
+                }
+                digits++;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) return -1;
+        int exp = 0;
+        if (i < to) {
+            exp = "KMGTPE".indexOf(page[i] & ~0x20) + 1;
+            if (exp > 0) i++;
+            if (i < to && (page[i] & ~0x20) == 'B') i++;
+        }
+        while (i < to && isSpace(page[i])) i++;
+        if (i < to && page[i] != '<') return -1;
+        if (exp == 0) {
+            if (point) return -1;
+            return integer;
+        }
+        approximate = true;
+        final double value = (integer + (double) fraction / scale) * Math.pow(1024, exp);
+        return value >= Long.MAX_VALUE ? -1 : (long) value;
+    }
+
+    private long parseDate(int cell, int to) {
+        final int start = indexOf('>', cell, to) + 1;
+        if (start == 0) return -1;
+        final int stop = indexOf('<', start, to);
+        if (stop == -1) return -1;
+        try {
+            final String text = new String(page, start, stop - start, StandardCharsets.US_ASCII).trim();
+            return LocalDateTime.parse(text, DATE).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private boolean isWordBoundary(int index) {
+        return index < 0 || isSpace(page[index]);
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /* Start of the element whose id attribute is the given value, -1 if there is none. */
+    private int findId(@NotNull String id) {
+        int index = find(id, 0, end);
+        while (index != -1) {
+            int it = index - 1;
+            if (it >= 0 && (page[it] == '"' || page[it] == '\'')) it--;
+            while (it >= 0 && isSpace(page[it])) it--;
+            if (it >= 0 && page[it] == '=') {
+                it--;
+                while (it >= 0 && isSpace(page[it])) it--;
+                final int after = index + id.length();
+                if (it >= 2 && (page[it] | 0x20) == 'd' && (page[it - 1] | 0x20) == 'i' && isWordBoundary(it - 2)
+                        && (after >= end || !isNameChar(page[after]))) {
+                    return index;
+                }
+            }
+            index = find(id, index + id.length(), end);
+        }
+        return -1;
+    }
+
+    private static boolean isNameChar(byte c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_';
+    }
+
+    private int indexOf(int c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (page[i] == c) return i;
+        }
+        return -1;
+    }
+
+    /* A tag name has to end there, "<a" does not find "<abbr". */
+    private int findTag(@NotNull String tag, int from, int to) {
+        int index = find(tag, from, to);
+        while (index != -1) {
+            final int next = index + tag.length();
+            if (next >= to || isWordBoundary(next) || page[next] == '>' || page[next] == '/') return index;
+            index = find(tag, next, to);
+        }
+        return -1;
+    }
+
+    /* ASCII case-insensitive, the token has to be lower case. */
+    private int find(@NotNull String token, int from, int to) {
+        final int last = to - token.length();
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < token.length(); j++) {
+                final int c = page[i + j];
+                if ((c >= 'A' && c <= 'Z' ? c | 0x20 : c) != token.charAt(j)) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
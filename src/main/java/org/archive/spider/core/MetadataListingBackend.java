@@ -0,0 +1,117 @@
+package org.archive.spider.core;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.archive.spider.util.Logger;
+import org.archive.spider.util.PathUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Lists a whole item with a single request to the metadata API
+ * (https://archive.org/metadata/<identifier>), carrying size, mtime and checksums.
+ * Malformed file entries are skipped and malformed checksums dropped, one bad record
+ * does not fail the listing.
+ */
+public class MetadataListingBackend implements ListingBackend {
+
+    public static final String DEFAULT_URL = "https://archive.org/metadata/";
+
+    private final String baseUrl;
+    private final PageFetcher fetcher;
+
+    public MetadataListingBackend(@Nullable Proxy proxy) {
+        this(DEFAULT_URL, new PageFetcher(proxy));
+    }
+
+    public MetadataListingBackend(@NotNull PageFetcher fetcher) {
+        this(DEFAULT_URL, fetcher);
+    }
+
+    public MetadataListingBackend(@NotNull String baseUrl, @NotNull PageFetcher fetcher) {
+        this.baseUrl = baseUrl;
+        this.fetcher = fetcher;
+    }
+
+    @Override
+    public @NotNull List<ListingEntry> list(@NotNull String path) throws IOException {
+        final int index = path.indexOf('/');
+        final String identifier = index == -1 ? path : path.substring(0, index);
+        final String prefix = index == -1 ? "" : PathUtils.decode(path.substring(index + 1));
+        return parse(new String(fetcher.fetch(baseUrl + identifier), StandardCharsets.UTF_8), prefix);
+    }
+
+    public static @NotNull List<ListingEntry> parse(@NotNull String json, @NotNull String prefix) throws IOException {
+        JsonArray files;
+        try {
+            JsonElement root = JsonParser.parseString(json);
+            JsonElement list = root.isJsonObject() ? root.getAsJsonObject().get("files") : null;
+            if (list == null || !list.isJsonArray()) {
+                throw new IOException("No files found in metadata.");
+            }
+            files = list.getAsJsonArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Malformed metadata: " + e.getMessage(), e);
+        }
+        List<ListingEntry> entries = new ArrayList<>(files.size());
+        for (JsonElement element : files) {
+            if (!element.isJsonObject()) {
+                Logger.waring("Skipping malformed file entry in metadata: " + element);
+                continue;
+            }
+            JsonObject file = element.getAsJsonObject();
+            String name = getString(file, "name");
+            if (name == null || !name.startsWith(prefix) || name.length() == prefix.length()) {
+                continue;
+            }
+            entries.add(new ListingEntry(
+                    PathUtils.encode(name.substring(prefix.length())),
+                    getLong(file, "size", 1),
+                    getLong(file, "mtime", 1000),
+                    getChecksum(file, "md5", 32, name),
+                    getChecksum(file, "sha1", 40, name)));
+        }
+        return entries;
+    }
+
+    private static @Nullable String getString(@NotNull JsonObject object, @NotNull String key) {
+        JsonElement element = object.get(key);
+        return element == null || !element.isJsonPrimitive() ? null : element.getAsString();
+    }
+
+    /* Hex digest of the given length, lower-cased, null if missing or not one. */
+    private static @Nullable String getChecksum(@NotNull JsonObject object, @NotNull String key, int length, @NotNull String name) {
+        String value = getString(object, key);
+        if (value == null) return null;
+        value = value.trim().toLowerCase(Locale.ROOT);
+        boolean valid = value.length() == length;
+        for (int i = 0; valid && i < length; i++) {
+            valid = Character.digit(value.charAt(i), 16) != -1;
+        }
+        if (!valid) {
+            Logger.waring("Ignoring malformed " + key + " \"" + value + "\" of \"" + name + "\"");
+            return null;
+        }
+        return value;
+    }
+
+    private static long getLong(@NotNull JsonObject object, @NotNull String key, long scale) {
+        String value = getString(object, key);
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value.trim()) * scale;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -1,34 +1,38 @@
 package org.archive.spider.core;
 
-public class Node {
-    public final int type;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/*
+ * Nodes only keep their own (encoded) name and a link to their parent, paths and URLs are
+ * rebuilt from the chain on demand so a crawled tree shares every prefix instead of repeating it.
+ */
+public abstract class Node {
     public final String name;
-    public final Object data;
+    public final DirectoryNode parent;
 
-    public Node(int type, String name, Object data) {
-        this.type = type;
+    Node(@NotNull String name, @Nullable DirectoryNode parent) {
         this.name = name;
-        this.data = data;
+        this.parent = parent;
     }
 
-    public Node(String name, Object data) {
-        this(TYPE_FILE, name, data);
+    public abstract int getType();
+
+    public boolean isDirectory() {
+        return getType() == TYPE_DIRECTORY;
     }
 
-    @Override
-    public String toString() {
-        return "Node{" +
-                "type=" + stringType() +
-                ", name='" + name + '\'' +
-                ", data=" + data +
-                '}';
+    public String getUrl() {
+        StringBuilder builder = new StringBuilder(128);
+        appendUrl(builder);
+        return builder.toString();
     }
 
-    private String stringType() {
-        if (type == TYPE_DIRECTORY) {
-            return  "D";
+    void appendUrl(@NotNull StringBuilder builder) {
+        if (parent != null) {
+            parent.appendUrl(builder);
         }
-        return "F";
+        builder.append(name);
     }
 
     public static final int TYPE_FILE = 1;
@@ -0,0 +1,86 @@
+package org.archive.spider.core;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.archive.spider.metrics.Counter;
+import org.archive.spider.metrics.Histogram;
+import org.archive.spider.metrics.Metrics;
+import org.archive.spider.metrics.MetricsRegistry;
+import org.archive.spider.util.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jsoup.HttpStatusException;
+
+import java.io.IOException;
+import java.net.Proxy;
+
+/*
+ * Fetches listing pages, revalidating cached copies with If-None-Match / If-Modified-Since.
+ */
+public class PageFetcher {
+
+    private final OkHttpClient client;
+    private final ListingCache cache;
+    private MetricsRegistry metrics;
+    private Counter pages;
+    private Histogram pageDuration;
+
+    public PageFetcher(@Nullable Proxy proxy) {
+        this(new OkHttpClient.Builder()
+                .proxy(proxy)
+                .build(), null);
+    }
+
+    public PageFetcher(@NotNull OkHttpClient client, @Nullable ListingCache cache) {
+        this.client = client;
+        this.cache = cache;
+        setMetrics(new MetricsRegistry());
+    }
+
+    public void setMetrics(@NotNull MetricsRegistry metrics) {
+        this.metrics = metrics;
+        pages = metrics.counter(Metrics.CRAWL_PAGES, "Listing pages fetched, including revalidated cached ones.");
+        pageDuration = metrics.histogram(Metrics.CRAWL_PAGE_DURATION, "Time to fetch a listing page.", Histogram.LATENCY_BUCKETS);
+    }
+
+    public byte @NotNull [] fetch(@NotNull String url) throws IOException {
+        ListingCache.Entry cached = cache == null ? null : cache.get(url);
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .get();
+        if (cached != null) {
+            if (cached.etag != null) builder.header("If-None-Match", cached.etag);
+            if (cached.lastModified != null) builder.header("If-Modified-Since", cached.lastModified);
+        }
+        final long start = System.nanoTime();
+        try (Response response = client.newCall(builder.build()).execute()) {
+            metrics.counter(Metrics.HTTP_RESPONSES, "HTTP responses by request kind and status code.",
+                    "kind", "listing", "code", Integer.toString(response.code())).increment();
+            if (cached != null && response.code() == 304) {
+                pages.increment();
+                pageDuration.observeNanos(System.nanoTime() - start);
+                cache.touch(url);
+                return cached.body;
+            }
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new HttpStatusException("Failed to request page!", response.code(), url);
+            }
+            byte[] bytes = body.bytes();
+            pages.increment();
+            pageDuration.observeNanos(System.nanoTime() - start);
+            String etag = response.header("ETag");
+            String lastModified = response.header("Last-Modified");
+            if (cache != null && (etag != null || lastModified != null)) {
+                try {
+                    cache.put(url, new ListingCache.Entry(etag, lastModified, bytes));
+                } catch (IOException e) {
+                    Logger.waring("Unable to cache \"" + url + "\": " + e.getMessage());
+                }
+            }
+            return bytes;
+        }
+    }
+}
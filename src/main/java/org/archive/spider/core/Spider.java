@@ -3,46 +3,196 @@ package org.archive.spider.core;
 import org.archive.spider.util.PathUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.Proxy;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class Spider {
 
     private final String baseUrl;
-    private final Proxy proxy;
+    private final List<ListingBackend> backends;
+    private final ForkJoinPool pool;
+    private volatile Filter filter;
 
     public Spider(@NotNull String baseUrl) {
         this(baseUrl, null);
     }
 
     public Spider(@NotNull String baseUrl, @Nullable Proxy proxy) {
+        this(baseUrl, proxy, 1);
+    }
+
+    public Spider(@NotNull String baseUrl, @Nullable Proxy proxy, int jobs) {
+        this(baseUrl, jobs, Collections.singletonList(new HtmlListingBackend(baseUrl, proxy)));
+    }
+
+    /*
+     * Backends are tried in order for every searched resource, the first one able to
+     * list it is used for the whole resource.
+     */
+    public Spider(@NotNull String baseUrl, int jobs, @NotNull List<ListingBackend> backends) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("No listing backend specified.");
+        }
         this.baseUrl = baseUrl;
-        this.proxy = proxy;
+        this.backends = new ArrayList<>(backends);
+        this.pool = new ForkJoinPool(Math.max(1, jobs));
     }
 
-    public Node search(@NotNull final String path, @NotNull String xpath) throws IOException {
-        final String url = String.format("%s%s", baseUrl, path);
-        Document document = Jsoup.connect(url)
-                .proxy(proxy)
-                .get();
-        Elements elements = document.selectXpath(xpath);
-        ArrayList<Object> data = new ArrayList<>();
-        for (Element element: elements) {
-            String href = element.attr("href");
-            if (PathUtils.isDirectory(href)) {
-                data.add(search(PathUtils.addSeparate(path) + href, xpath));
-            } else {
-                data.add(new Node(PathUtils.getName(href), baseUrl + PathUtils.addSeparate(path) + href));
-            }
+    /* Applied while crawling, so excluded files are never reported and excluded directories never listed. */
+    public void setFilter(@Nullable Filter filter) {
+        this.filter = filter == null || filter.isEmpty() ? null : filter;
+    }
+
+    public DirectoryNode search(@NotNull final String path) throws IOException {
+        try {
+            return pool.invoke(new SearchTask(path, null, null));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return new Node(Node.TYPE_DIRECTORY, PathUtils.getName(path), data);
     }
 
+    public void search(@NotNull final String path, @NotNull SearchListener listener) throws IOException {
+        try {
+            pool.invoke(new SearchTask(path, null, listener));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class SearchTask extends RecursiveTask<DirectoryNode> {
+
+        private final String path;
+        /* Where the path below the searched resource starts, which is what the filter sees. */
+        private final int offset;
+        private final DirectoryNode node;
+        private final SearchListener listener;
+        private ListingBackend backend;
+
+        SearchTask(@NotNull String path, @Nullable ListingBackend backend, @Nullable SearchListener listener) {
+            this.path = PathUtils.addSeparate(path);
+            this.offset = this.path.length();
+            this.node = new DirectoryNode(PathUtils.getName(this.path), baseUrl + this.path);
+            this.backend = backend;
+            this.listener = listener;
+        }
+
+        SearchTask(@NotNull String path, int offset, @NotNull DirectoryNode node, @NotNull ListingBackend backend, @Nullable SearchListener listener) {
+            this.path = path;
+            this.offset = offset;
+            this.node = node;
+            this.backend = backend;
+            this.listener = listener;
+        }
 
+        @Override
+        protected DirectoryNode compute() {
+            List<ListingEntry> entries;
+            try {
+                entries = list();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            /* Sub-directories are forked in place so siblings are fetched in parallel
+               while the listing keeps its original order. With a listener files are
+               handed over as soon as they are found and the tree is not retained, only
+               the parent chain each file needs to resolve its URL. */
+            final Filter filter = Spider.this.filter;
+            final String relative = path.substring(offset);
+            List<SearchTask> tasks = new ArrayList<>();
+            Map<String, DirectoryNode> directories = new HashMap<>();
+            for (ListingEntry entry : entries) {
+                if (filter != null && (PathUtils.isDirectory(entry.href)
+                        ? !filter.acceptDirectory(relative + entry.href)
+                        : !filter.acceptFile(relative + entry.href, entry.size))) {
+                    continue;
+                }
+                final String href = PathUtils.isDirectory(entry.href)
+                        ? entry.href.substring(0, entry.href.length() - 1) : entry.href;
+                final int index = href.lastIndexOf('/');
+                final String directory = href.substring(0, index + 1);
+                final DirectoryNode parent = getDirectory(directories, directory);
+                final String name = href.substring(index + 1);
+                if (PathUtils.isDirectory(entry.href)) {
+                    DirectoryNode child = new DirectoryNode(name, parent);
+                    if (listener == null) {
+                        parent.add(child);
+                    }
+                    SearchTask task = new SearchTask(path + entry.href, offset, child, backend, listener);
+                    task.fork();
+                    tasks.add(task);
+                    continue;
+                }
+                /* Rounded values only serve the filter, sync checks and dedup compare exact ones. */
+                FileNode file = entry.approximate
+                        ? new FileNode(name, parent, -1, -1, entry.md5, entry.sha1)
+                        : new FileNode(name, parent, entry.size, entry.lastModified, entry.md5, entry.sha1);
+                if (listener != null) {
+                    listener.onFile(path + directory, file);
+                } else {
+                    parent.add(file);
+                }
+            }
+            for (SearchTask task : tasks) {
+                task.join();
+            }
+            node.trim();
+            for (DirectoryNode it : directories.values()) {
+                it.trim();
+            }
+            return node;
+        }
+
+        private List<ListingEntry> list() throws IOException {
+            if (backend != null) {
+                return backend.list(path);
+            }
+            IOException failure = null;
+            for (ListingBackend it : backends) {
+                try {
+                    List<ListingEntry> entries = it.list(path);
+                    backend = it;
+                    return entries;
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            throw failure;
+        }
+
+        /* Files listed with a nested href ("disc1/01.flac") are grouped under directory nodes. */
+        private DirectoryNode getDirectory(Map<String, DirectoryNode> directories, String directory) {
+            if (directory.isEmpty()) {
+                return node;
+            }
+            DirectoryNode child = directories.get(directory);
+            if (child == null) {
+                final int index = directory.lastIndexOf('/', directory.length() - 2);
+                DirectoryNode parent = getDirectory(directories, directory.substring(0, index + 1));
+                child = new DirectoryNode(PathUtils.getName(directory), parent);
+                if (listener == null) {
+                    parent.add(child);
+                }
+                directories.put(directory, child);
+            }
+            return child;
+        }
+    }
+
+    public interface SearchListener {
+        /* Called from crawl threads, path is the directory the file was listed in. */
+        void onFile(@NotNull String path, @NotNull FileNode node);
+    }
 }
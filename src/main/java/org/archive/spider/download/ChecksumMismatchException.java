@@ -0,0 +1,18 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+public class ChecksumMismatchException extends IOException {
+    public final String algorithm;
+    public final String expected;
+    public final String actual;
+
+    public ChecksumMismatchException(@NotNull String algorithm, @NotNull String expected, @NotNull String actual) {
+        super(algorithm + " mismatch, expected " + expected + " but got " + actual + ".");
+        this.algorithm = algorithm;
+        this.expected = expected;
+        this.actual = actual;
+    }
+}
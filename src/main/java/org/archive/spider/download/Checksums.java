@@ -0,0 +1,77 @@
+package org.archive.spider.download;
+
+import org.archive.spider.util.DigestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+/*
+ * MD5 and/or SHA-1 of a file fed with the bytes as they are written. Only a file written front
+ * to back in one stream can be hashed like this, a resumed one first re-reads what is already on disk.
+ */
+final class Checksums {
+
+    private final MessageDigest md5;
+    private final MessageDigest sha1;
+    private String md5Hex;
+    private String sha1Hex;
+
+    Checksums(boolean md5, boolean sha1) {
+        this.md5 = md5 ? DigestUtils.newDigest("MD5") : null;
+        this.sha1 = sha1 ? DigestUtils.newDigest("SHA-1") : null;
+    }
+
+    /* Consumes nothing, the buffer's position is left where it was. */
+    void update(@NotNull ByteBuffer buffer) {
+        final int position = buffer.position();
+        if (md5 != null) {
+            md5.update(buffer);
+            buffer.position(position);
+        }
+        if (sha1 != null) {
+            sha1.update(buffer);
+            buffer.position(position);
+        }
+    }
+
+    /* Hashes the first length bytes of the channel, using the given buffer. */
+    void update(@NotNull FileChannel channel, long length, @NotNull ByteBuffer buffer) throws IOException {
+        long position = 0;
+        while (position < length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), length - position));
+            final int count = channel.read(buffer, position);
+            if (count == -1) {
+                throw new IOException("Part file is shorter than its recorded progress.");
+            }
+            buffer.flip();
+            update(buffer);
+            position += count;
+        }
+    }
+
+    @Nullable
+    String getMd5() {
+        if (md5Hex == null && md5 != null) md5Hex = DigestUtils.toHex(md5.digest());
+        return md5Hex;
+    }
+
+    @Nullable
+    String getSha1() {
+        if (sha1Hex == null && sha1 != null) sha1Hex = DigestUtils.toHex(sha1.digest());
+        return sha1Hex;
+    }
+
+    void verify(@Nullable String expectedMd5, @Nullable String expectedSha1) throws ChecksumMismatchException {
+        if (expectedMd5 != null && getMd5() != null && !expectedMd5.equalsIgnoreCase(getMd5())) {
+            throw new ChecksumMismatchException("MD5", expectedMd5, getMd5());
+        }
+        if (expectedSha1 != null && getSha1() != null && !expectedSha1.equalsIgnoreCase(getSha1())) {
+            throw new ChecksumMismatchException("SHA-1", expectedSha1, getSha1());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Per host breaker: a throttling answer (429/503) opens it for the Retry-After period or an
+ * exponential cool-down, after which a single probe is let through. The probe succeeding
+ * closes the breaker, another throttle opens it again for longer.
+ */
+final class CircuitBreaker {
+
+    private static final long BASE_COOL_DOWN = 5000;
+    private static final long MAX_COOL_DOWN = 5 * 60 * 1000;
+    private static final long PROBE_WAIT = 1000;
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    /*
+     * Milliseconds a new request to host has to wait, 0 when it may go now. A request let through
+     * as the probe holds it, under owner, until an outcome is reported or it is released.
+     */
+    long getDelay(@NotNull String host, @NotNull Object owner) {
+        Host it = hosts.get(host);
+        if (it == null) return 0;
+        synchronized (it) {
+            if (!it.open) return 0;
+            long remaining = it.openUntil - System.currentTimeMillis();
+            if (remaining > 0) return remaining;
+            if (it.probe != null) return PROBE_WAIT;
+            it.probe = owner;
+            return 0;
+        }
+    }
+
+    void onSuccess(@NotNull String host) {
+        Host it = hosts.get(host);
+        if (it == null) return;
+        synchronized (it) {
+            it.open = false;
+            it.probe = null;
+            it.throttles = 0;
+        }
+    }
+
+    void onFailure(@NotNull String host) {
+        Host it = hosts.get(host);
+        if (it == null) return;
+        synchronized (it) {
+            it.probe = null;
+        }
+    }
+
+    /*
+     * Called once a request dispatched for host is done however it ended, a probe that settled
+     * without an outcome (a duplicate, a cancellation, an error) must not keep the host shut.
+     */
+    void onSettled(@NotNull String host, @NotNull Object owner) {
+        Host it = hosts.get(host);
+        if (it == null) return;
+        synchronized (it) {
+            if (it.probe == owner) it.probe = null;
+        }
+    }
+
+    /* Returns how long the host is paused for. */
+    long onThrottle(@NotNull String host, long retryAfter) {
+        Host it = hosts.computeIfAbsent(host, key -> new Host());
+        synchronized (it) {
+            it.throttles++;
+            long coolDown = Math.min(MAX_COOL_DOWN, BASE_COOL_DOWN << Math.min(it.throttles - 1, 16));
+            coolDown = Math.max(coolDown, retryAfter);
+            it.open = true;
+            it.probe = null;
+            it.openUntil = Math.max(it.openUntil, System.currentTimeMillis() + coolDown);
+            return coolDown;
+        }
+    }
+
+    private static final class Host {
+        boolean open;
+        Object probe;
+        int throttles;
+        long openUntil;
+    }
+}
@@ -0,0 +1,175 @@
+package org.archive.spider.download;
+
+import org.archive.spider.util.ByteFormatter;
+import org.archive.spider.util.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/*
+ * Download slots between min and max, resized with AIMD on what the last window measured:
+ * grow while adding slots still raises aggregate throughput, shrink multiplicatively on
+ * errors or when time-to-first-byte degrades against the best seen so far.
+ */
+final class ConcurrencyController {
+
+    private static final long INTERVAL = 2000;
+    private static final double MIN_GAIN = 1.05;
+    private static final double MAX_ERROR_RATE = 0.1;
+    private static final double MAX_TTFB_FACTOR = 4.0;
+    private static final long MIN_TTFB_SPIKE = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int HOLD_WINDOWS = 3;
+
+    private final int min;
+    private final int max;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private int limit;
+    private int active;
+
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder ttfbNanos = new LongAdder();
+    private final LongAdder ttfbCount = new LongAdder();
+    private ScheduledExecutorService scheduler;
+
+    private double lastThroughput;
+    private double bestTtfb = -1;
+    private boolean increased;
+    private boolean slowStart = true;
+    private int hold;
+
+    ConcurrencyController(int min, int max) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.limit = this.min;
+    }
+
+    boolean isAdaptive() {
+        return min != max;
+    }
+
+    void start(@NotNull IntSupplier pending) {
+        if (!isAdaptive()) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "concurrency-controller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> adjust(pending.getAsInt()), INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (active >= limit) {
+                available.await();
+            }
+            active++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            active--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getActive() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void onBytes(long count) {
+        if (isAdaptive()) bytes.add(count);
+    }
+
+    void onFirstByte(long nanos) {
+        if (!isAdaptive()) return;
+        ttfbNanos.add(nanos);
+        ttfbCount.increment();
+    }
+
+    void onCompleted() {
+        completed.increment();
+    }
+
+    void onError() {
+        errors.increment();
+    }
+
+    private void adjust(int pending) {
+        final double throughput = bytes.sumThenReset() * 1000.0 / INTERVAL;
+        final long done = completed.sumThenReset();
+        final long failed = errors.sumThenReset();
+        final long nanos = ttfbNanos.sumThenReset();
+        final long count = ttfbCount.sumThenReset();
+        final double ttfb = count == 0 ? -1 : nanos / (double) count;
+        if (ttfb > 0 && (bestTtfb < 0 || ttfb < bestTtfb)) {
+            bestTtfb = ttfb;
+        }
+        lock.lock();
+        try {
+            int next = limit;
+            boolean saturated = active >= limit && pending > 0;
+            if (done + failed > 0 && failed / (double) (done + failed) > MAX_ERROR_RATE
+                    || ttfb > Math.max(bestTtfb * MAX_TTFB_FACTOR, MIN_TTFB_SPIKE)) {
+                next = Math.min(limit - 1, limit * 3 / 4);
+                slowStart = false;
+                hold = HOLD_WINDOWS;
+            } else if (hold > 0) {
+                hold--;
+            } else if (saturated) {
+                if (increased && throughput < lastThroughput * MIN_GAIN) {
+                    next = limit - 1;
+                    slowStart = false;
+                    hold = HOLD_WINDOWS;
+                } else {
+                    next = slowStart ? limit * 2 : limit + 1;
+                }
+            }
+            next = Math.max(min, Math.min(max, next));
+            increased = next > limit;
+            lastThroughput = throughput;
+            if (next != limit) {
+                limit = next;
+                available.signalAll();
+                Logger.info(String.format("Concurrency: %d (%s/s)", next, ByteFormatter.format((long) throughput)));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
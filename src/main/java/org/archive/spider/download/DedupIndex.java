@@ -0,0 +1,122 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Locale;
+
+/*
+ * Content-addressed store of already downloaded files, kept as hardlinks under
+ * "<directory>/md5/ab/abcdef..." and "<directory>/sha1/..". A download whose listed checksum
+ * is in the store is satisfied with a link to it instead of a fetch. Only files that passed
+ * verification are added, and only listed checksums are looked up: a size alone cannot tell
+ * two files apart before their content has been fetched.
+ */
+public class DedupIndex {
+
+    private final Path directory;
+    private volatile boolean links = true;
+
+    public DedupIndex(@NotNull Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /* Places a copy of known content at target, false if nothing matching is stored. */
+    public boolean link(@NotNull DownloadRequest request, @NotNull Path target) throws IOException {
+        Path object = find(request);
+        if (object == null) {
+            return false;
+        }
+        if (request.size >= 0 && Files.size(object) != request.size) {
+            return false;
+        }
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".link");
+        Files.deleteIfExists(tmp);
+        place(object, tmp);
+        move(tmp, target);
+        return true;
+    }
+
+    /* Stores a verified file under each of its digests, keeping whatever is already stored. */
+    public void add(@NotNull Path file, @Nullable String md5, @Nullable String sha1) throws IOException {
+        if (md5 != null) store(file, resolve("md5", md5));
+        if (sha1 != null) store(file, resolve("sha1", sha1));
+    }
+
+    /*
+     * Whether file is a link to the stored content for one of the checksums, so it is known to
+     * have that content without hashing it. Such a file shares its inode, and with it its mtime,
+     * with every other copy.
+     */
+    public boolean holds(@NotNull Path file, @Nullable String md5, @Nullable String sha1) {
+        try {
+            if (md5 != null) {
+                Path object = resolve("md5", md5);
+                if (Files.exists(object) && Files.isSameFile(file, object)) return true;
+            }
+            if (sha1 != null) {
+                Path object = resolve("sha1", sha1);
+                if (Files.exists(object) && Files.isSameFile(file, object)) return true;
+            }
+        } catch (IOException ignored) {
+        }
+        return false;
+    }
+
+    private @Nullable Path find(@NotNull DownloadRequest request) {
+        final String md5 = request.getMd5();
+        if (md5 != null) {
+            Path object = resolve("md5", md5);
+            if (Files.isRegularFile(object)) return object;
+        }
+        final String sha1 = request.getSha1();
+        if (sha1 != null) {
+            Path object = resolve("sha1", sha1);
+            if (Files.isRegularFile(object)) return object;
+        }
+        return null;
+    }
+
+    private void store(@NotNull Path file, @NotNull Path object) throws IOException {
+        if (Files.exists(object)) return;
+        Files.createDirectories(object.getParent());
+        Path tmp = object.resolveSibling(object.getFileName() + ".tmp" + Thread.currentThread().getId());
+        Files.deleteIfExists(tmp);
+        place(file, tmp);
+        move(tmp, object);
+    }
+
+    /*
+     * A hardlink where the file system allows one, a plain copy otherwise (across devices, or
+     * on file systems without links) which copy-on-write file systems can still share.
+     */
+    private void place(@NotNull Path source, @NotNull Path target) throws IOException {
+        if (links) {
+            try {
+                Files.createLink(target, source);
+                return;
+            } catch (FileAlreadyExistsException | NoSuchFileException e) {
+                throw e;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                links = false;
+            }
+        }
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path resolve(@NotNull String algorithm, @NotNull String hex) {
+        final String name = hex.toLowerCase(Locale.ROOT);
+        return directory.resolve(algorithm).resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    private static void move(@NotNull Path source, @NotNull Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
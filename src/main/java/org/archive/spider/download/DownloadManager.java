@@ -2,6 +2,10 @@ package org.archive.spider.download;
 
 import me.tongfei.progressbar.*;
 import okhttp3.*;
+import org.archive.spider.metrics.Counter;
+import org.archive.spider.metrics.Histogram;
+import org.archive.spider.metrics.Metrics;
+import org.archive.spider.metrics.MetricsRegistry;
 import org.archive.spider.util.Logger;
 import org.archive.spider.util.SystemUtils;
 import org.jetbrains.annotations.NotNull;
@@ -10,50 +14,400 @@ import org.jsoup.HttpStatusException;
 
 import java.io.*;
 import java.net.MalformedURLException;
+import java.net.ProtocolException;
 import java.net.Proxy;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 
 public class DownloadManager {
 
     private static final int MAX_FILENAME_LENGTH = 30;
+    private static final long DEFAULT_SEGMENT_THRESHOLD = 32 * 1048576L;
+    private static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    private static final long DEFAULT_RESOLUTION_TTL = 10 * 60 * 1000L;
+    private static final long CHECKPOINT_BYTES = 8 * 1048576L;
+    private static final long PROGRESS_BYTES = 1048576L;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /* Direct buffers are pooled rather than per thread so virtual threads do not each allocate one. */
+    private static final Queue<ByteBuffer> BUFFERS = new ConcurrentLinkedQueue<>();
     private DownloadEventListener listener;
 
     private final OkHttpClient client;
     private final AtomicInteger indicator = new AtomicInteger(1);
+    private final BlockingQueue<DownloadTask> queue = new PriorityBlockingQueue<>(64, this::compare);
+    /* Downloads submitted so far per resource, the round a task is started in with round-robin. */
+    private final Map<String, AtomicInteger> rounds = new ConcurrentHashMap<>();
+    private final ConcurrencyController controller;
     private final ExecutorService executor;
+    private final ExecutorService segmentExecutor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "download-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CircuitBreaker breaker = new CircuitBreaker();
+    /* Submitted downloads that have not settled yet, including those waiting for a retry. */
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final Semaphore capacity;
+    /* Unsettled downloads, so shutdownNow() can reach queued, waiting and running ones alike. */
+    private final Set<DownloadTask> tasks = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown = false;
+    private RetryPolicy retryPolicy = new RetryPolicy(3, 1000, 2 * 60 * 1000);
+    private int segments = 1;
+    private long segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+    private RateLimiter rateLimiter;
+    private long jobRate = 0;
+    private SchedulingPolicy policy = SchedulingPolicy.FIFO;
+    private boolean progressBars = true;
+    private boolean verify = true;
+    private Manifest manifest;
+    private DedupIndex dedup;
+    private ResolutionCache resolutions = new ResolutionCache(DEFAULT_RESOLUTION_TTL);
+    /* Where items were redirected to, kept for the breaker even when requests are not rewritten. */
+    private ResolutionCache nodes = resolutions;
+    private MetricsRegistry metrics;
+    private Counter bytesCounter;
+    private Counter successCounter;
+    private Counter failureCounter;
+    private Counter retryCounter;
+    private Counter dedupCounter;
+    private Counter dedupBytesCounter;
+    private Counter resolvedCounter;
+    private Counter learnedCounter;
+    private Counter invalidatedCounter;
+    private Histogram ttfbHistogram;
+    private Histogram durationHistogram;
+
+    public DownloadManager(int jobs) {
+        this(jobs, new DownloadEventListener() {});
+    }
 
     public DownloadManager(int jobs, @NotNull DownloadEventListener listener) {
         this(jobs, listener, null);
     }
 
     public DownloadManager(int jobs, @NotNull DownloadEventListener listener, @Nullable Proxy proxy) {
+        this(jobs, jobs, listener, proxy, false);
+    }
+
+    public DownloadManager(int minJobs, int maxJobs, @NotNull DownloadEventListener listener, @Nullable Proxy proxy, boolean virtualThreads) {
+        this(minJobs, maxJobs, DEFAULT_QUEUE_CAPACITY, listener, proxy, virtualThreads);
+    }
+
+    /*
+     * With minJobs below maxJobs the number of concurrent downloads is adapted at runtime,
+     * virtualThreads runs downloads on virtual threads where the JVM supports them (Java 21+).
+     * queueCapacity bounds the downloads waiting to start, download() blocks beyond it.
+     */
+    public DownloadManager(int minJobs, int maxJobs, int queueCapacity, @NotNull DownloadEventListener listener, @Nullable Proxy proxy, boolean virtualThreads) {
+        capacity = new Semaphore(Math.max(1, queueCapacity));
+        /* Enough idle connections kept for every job to find a warm one to its data node. */
         client = new OkHttpClient.Builder()
                 .proxy(proxy)
+                .connectionPool(new ConnectionPool(Math.max(5, maxJobs), 5, TimeUnit.MINUTES))
                 .build();
-        executor = Executors.newFixedThreadPool(jobs);
+        controller = new ConcurrencyController(minJobs, maxJobs);
+        executor = newExecutor(virtualThreads);
+        segmentExecutor = newExecutor(virtualThreads);
         this.listener = listener;
+        setMetrics(new MetricsRegistry());
+        /* A daemon so a caller failing before shutdown() does not leave the JVM running forever. */
+        Thread dispatcher = new Thread(this::dispatch, "download-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        controller.start(queue::size);
+    }
+
+    public CompletableFuture<DownloadResult> download(@NotNull URL url, @NotNull String filepath) {
+        return download(url, Paths.get(filepath));
+    }
+
+    public CompletableFuture<DownloadResult> download(@NotNull String url, @NotNull String filepath) throws MalformedURLException {
+        return download(new URL(url), Paths.get(filepath));
+    }
+
+    public CompletableFuture<DownloadResult> download(@NotNull URL url, @NotNull Path filepath) {
+        return download(new DownloadRequest(url, filepath));
+    }
+
+    /*
+     * Blocks while the queue holds as many not yet started downloads as its capacity allows.
+     * The future fails with the last error once retries are exhausted, cancelling it stops the
+     * download wherever it is and keeps a resumable part file.
+     */
+    public CompletableFuture<DownloadResult> download(@NotNull DownloadRequest request) {
+        if (shutdown) {
+            return rejected();
+        }
+        capacity.acquireUninterruptibly();
+        return submit(request);
+    }
+
+    /*
+     * Waits at most the timeout for room in the queue. Returns null, not a future and without
+     * queueing anything, when none became available, so the caller can back off or drop it.
+     */
+    public @Nullable CompletableFuture<DownloadResult> download(@NotNull DownloadRequest request, long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        if (shutdown) {
+            return rejected();
+        }
+        if (!capacity.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return submit(request);
+    }
+
+    /* Completes once every download settled, with the results in request order or the first failure. */
+    public CompletableFuture<List<DownloadResult>> downloadAll(@NotNull Collection<DownloadRequest> requests) {
+        List<CompletableFuture<DownloadResult>> futures = new ArrayList<>(requests.size());
+        for (DownloadRequest request : requests) {
+            futures.add(download(request));
+        }
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).thenApply(ignored -> {
+            List<DownloadResult> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<DownloadResult> future : futures) {
+                results.add(future.join());
+            }
+            return results;
+        });
+    }
+
+    private static CompletableFuture<DownloadResult> rejected() {
+        CompletableFuture<DownloadResult> future = new CompletableFuture<>();
+        future.completeExceptionally(new RejectedExecutionException("Download manager has been shut down."));
+        return future;
+    }
+
+    private CompletableFuture<DownloadResult> submit(@NotNull DownloadRequest request) {
+        long size = request.size;
+        if (size < 0 && policy.isSizeAware()) {
+            size = SyncChecker.head(client, request)[0];
+        }
+        int round = 0;
+        if (policy == SchedulingPolicy.ROUND_ROBIN) {
+            final String resource = request.resource != null ? request.resource : request.getHost();
+            round = rounds.computeIfAbsent(resource, it -> new AtomicInteger()).getAndIncrement();
+        }
+        pending.incrementAndGet();
+        DownloadTask task = new DownloadTask(indicator.getAndIncrement(), request, size, round);
+        tasks.add(task);
+        task.future.whenComplete((result, e) -> {
+            if (e instanceof CancellationException) task.cancel();
+        });
+        queue.add(task);
+        return task.future;
+    }
+
+    /* Files of unknown size go last with either size policy, ties keep submission order. */
+    private int compare(@NotNull DownloadTask a, @NotNull DownloadTask b) {
+        int result = 0;
+        switch (policy) {
+            case LARGEST_FIRST:
+                result = Long.compare(b.size, a.size);
+                break;
+            case SMALLEST_FIRST:
+                result = Long.compare(a.size < 0 ? Long.MAX_VALUE : a.size, b.size < 0 ? Long.MAX_VALUE : b.size);
+                break;
+            case ROUND_ROBIN:
+                result = Integer.compare(a.round, b.round);
+                break;
+        }
+        return result != 0 ? result : Integer.compare(a.jobId, b.jobId);
+    }
+
+    /* Has to be set before the first download is submitted. */
+    public void setMetrics(@NotNull MetricsRegistry metrics) {
+        this.metrics = metrics;
+        bytesCounter = metrics.counter(Metrics.DOWNLOAD_BYTES, "Bytes written to disk by downloads.");
+        successCounter = metrics.counter(Metrics.DOWNLOADS, "Settled downloads by result.", "result", "success");
+        failureCounter = metrics.counter(Metrics.DOWNLOADS, "Settled downloads by result.", "result", "failure");
+        retryCounter = metrics.counter(Metrics.DOWNLOAD_RETRIES, "Download attempts scheduled for a retry.");
+        dedupCounter = metrics.counter(Metrics.DEDUP_FILES, "Downloads satisfied from already downloaded identical content.");
+        dedupBytesCounter = metrics.counter(Metrics.DEDUP_BYTES, "Bytes not fetched thanks to deduplication.");
+        resolvedCounter = metrics.counter(Metrics.RESOLUTIONS, "Download redirects by what the resolution cache did.", "result", "hit");
+        learnedCounter = metrics.counter(Metrics.RESOLUTIONS, "Download redirects by what the resolution cache did.", "result", "learned");
+        invalidatedCounter = metrics.counter(Metrics.RESOLUTIONS, "Download redirects by what the resolution cache did.", "result", "invalidated");
+        ttfbHistogram = metrics.histogram(Metrics.DOWNLOAD_TTFB, "Time from sending a download request to its response headers.", Histogram.LATENCY_BUCKETS);
+        durationHistogram = metrics.histogram(Metrics.DOWNLOAD_DURATION, "Time a successful download attempt took from request to completion.", Histogram.DURATION_BUCKETS);
+        metrics.gauge(Metrics.QUEUE_DEPTH, "Downloads waiting to be started.", queue::size);
+        metrics.gauge(Metrics.ACTIVE_JOBS, "Downloads currently transferring.", controller::getActive);
+        metrics.gauge(Metrics.CONCURRENCY, "Current limit of concurrent downloads.", controller::getLimit);
+    }
+
+    /*
+     * With verify a download fails when its MD5 or SHA-1 does not match the request, the digests
+     * are computed while the bytes are written. Completed files are recorded in the manifest, if any.
+     */
+    public void setVerification(boolean verify, @Nullable Manifest manifest) {
+        this.verify = verify;
+        this.manifest = manifest;
     }
 
-    public void download(@NotNull URL url, @NotNull String filepath) {
-        download(url, Paths.get(filepath));
+    /* Downloads with a listed checksum already in the index are linked instead of fetched. */
+    public void setDedup(@Nullable DedupIndex dedup) {
+        this.dedup = dedup;
     }
 
-    public void download(@NotNull String url, @NotNull String filepath) throws MalformedURLException {
-        download(new URL(url), Paths.get(filepath));
+    /*
+     * How long the data node an item's downloads were redirected to is requested directly,
+     * 0 to follow the redirect for every file.
+     */
+    public void setResolutionTtl(long ttl) {
+        this.resolutions = ttl > 0 ? new ResolutionCache(ttl) : null;
+        this.nodes = resolutions != null ? resolutions : new ResolutionCache(DEFAULT_RESOLUTION_TTL);
     }
 
-    public void download(@NotNull URL url, @NotNull Path filepath) {
-        executor.execute(new DownloadTask(indicator.getAndIncrement(), url, filepath));
+    /* Without per-job progress bars progress is only visible through the metrics. */
+    public void setProgressBars(boolean progressBars) {
+        this.progressBars = progressBars;
     }
 
+    /* Has to be chosen before the first download is submitted. */
+    public void setSchedulingPolicy(@NotNull SchedulingPolicy policy) {
+        if (indicator.get() > 1) {
+            throw new IllegalStateException("Scheduling policy must be set before downloading.");
+        }
+        this.policy = policy;
+    }
+
+    public void setRetryPolicy(@NotNull RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /*
+     * rate caps all jobs together and jobRate each job on its own, in bytes per second (0 for unlimited).
+     * The schedule overrides the global rate inside its time windows.
+     */
+    public void setRateLimit(long rate, long jobRate, @NotNull List<RateLimiter.Window> schedule) {
+        this.rateLimiter = rate > 0 || !schedule.isEmpty() ? new RateLimiter(rate, schedule) : null;
+        this.jobRate = Math.max(0, jobRate);
+    }
+
+    public int getConcurrency() {
+        return controller.getLimit();
+    }
+
+    public void setSegmentation(int segments, long threshold) {
+        this.segments = Math.max(1, segments);
+        this.segmentThreshold = Math.max(0, threshold);
+    }
+
+    /*
+     * No new downloads are accepted, already queued ones and their retries still run and the
+     * pools stop once all of them settled.
+     */
     public void shutdown() {
-        executor.shutdown();
+        shutdown = true;
+    }
+
+    /* Like shutdown() but cancels every download that has not settled yet. */
+    public void shutdownNow() {
+        shutdown = true;
+        for (DownloadTask task : tasks) {
+            task.future.cancel(true);
+        }
+    }
+
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    private void dispatch() {
+        try {
+            while (true) {
+                controller.acquire();
+                DownloadTask task;
+                while ((task = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    if (shutdown && pending.get() == 0) {
+                        controller.release();
+                        return;
+                    }
+                }
+                if (!task.dispatched) {
+                    task.dispatched = true;
+                    capacity.release();
+                }
+                if (task.cancelled) {
+                    controller.release();
+                    task.settle();
+                    continue;
+                }
+                /* The attempt may end up on another node, the probe is released for this one. */
+                final String host = task.getHost();
+                final long delay = breaker.getDelay(host, task);
+                if (delay > 0) {
+                    controller.release();
+                    schedule(task, delay);
+                    continue;
+                }
+                final DownloadTask it = task;
+                executor.execute(() -> {
+                    try {
+                        it.run();
+                    } finally {
+                        breaker.onSettled(host, it);
+                        controller.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+            segmentExecutor.shutdown();
+            scheduler.shutdown();
+            controller.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (manifest != null) {
+                try {
+                    manifest.close();
+                } catch (IOException e) {
+                    Logger.error("Failed to close manifest: " + e.getMessage());
+                }
+            }
+            terminated.countDown();
+        }
+    }
+
+    private void schedule(@NotNull DownloadTask task, long delay) {
+        scheduler.schedule(() -> queue.add(task), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static ExecutorService newExecutor(boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                Logger.waring("Virtual threads are not supported by this JVM, using platform threads.");
+            }
+        }
+        return Executors.newCachedThreadPool();
     }
 
     private ProgressBarBuilder newProgressBarBuilder(int jobId, @NotNull String filename, long max) {
@@ -91,70 +445,500 @@ public class DownloadManager {
     private class DownloadTask implements Runnable {
 
         private final int jobId;
-        private final Path filepath;
-        private final URL url;
+        private final DownloadRequest request;
+        /* Scheduling keys: the known or probed length, and the round-robin round. */
+        private final long size;
+        private final int round;
+        final CompletableFuture<DownloadResult> future = new CompletableFuture<>();
+        /* Calls in flight for this job, the main one and those of its segments. */
+        private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled = false;
+        /* Fed by the write loop when the file is written front to back in a single range. */
+        private Checksums checksums;
+        private long started = -1;
+        /* The data node that served the last attempt, used for throttling decisions. */
+        private volatile String host;
+        private volatile long retryAfter;
+        private int retries = 0;
+        private boolean dispatched = false;
+        /* Only materialised once the job runs, queued tasks stay as small as their request. */
+        private Path filepath;
+        private URL url;
+        private RateLimiter jobLimiter;
 
-        DownloadTask(int jobId, @NotNull URL url, @NotNull Path filepath) {
+        DownloadTask(int jobId, @NotNull DownloadRequest request, long size, int round) {
             this.jobId = jobId;
-            this.filepath = filepath;
-            this.url = url;
+            this.request = request;
+            this.size = size;
+            this.round = round;
+        }
+
+        /*
+         * Before the first attempt the request only names archive.org, the node it redirects to is
+         * taken from what was learned about the item so a throttling node holds back its queue.
+         */
+        String getHost() {
+            if (host != null) return host;
+            final String node = nodes.resolveHost(request.getUrlString());
+            return node != null ? node : request.getHost();
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (Call call : calls) {
+                call.cancel();
+            }
+        }
+
+        void settle() {
+            tasks.remove(this);
+            pending.decrementAndGet();
+            listener.onJobCompleted(jobId);
+        }
+
+        private Response execute(@NotNull Request request) throws IOException {
+            Call call = client.newCall(request);
+            calls.add(call);
+            if (cancelled) {
+                call.cancel();
+            }
+            try {
+                return call.execute();
+            } finally {
+                calls.remove(call);
+            }
         }
 
         @Override
         public void run() {
-            Request request = new Request.Builder()
-                    .url(url)
-                    .get()
-                    .build();
+            if (filepath == null) {
+                filepath = request.getFilepath();
+                url = request.getUrl();
+                jobLimiter = jobRate > 0 ? new RateLimiter(jobRate) : null;
+            }
             final String filename = filepath.getFileName().toString();
-            try (Response response = client.newCall(request).execute()) {
-                if (response.isSuccessful()) {
-                    ResponseBody body = response.body();
-                    if (body != null) {
-                        String croppedFilename = filepath.getFileName().toString();
-                        if (filename.length() > MAX_FILENAME_LENGTH) {
-                            croppedFilename = filename.substring(0, MAX_FILENAME_LENGTH - 3) + "...";
-                        } else {
-                            croppedFilename = String.format("%-30s", croppedFilename);
-                        }
-                        try (InputStream inputStream = ProgressBar.wrap(body.byteStream(), newProgressBarBuilder(jobId, croppedFilename, body.contentLength()));
-                             OutputStream out = Files.newOutputStream(filepath)) {
-                            int readNumInBytes;
-                            byte[] buffer = new byte[1024];
-                            while ((readNumInBytes = inputStream.read(buffer)) != -1) {
-                                if (readNumInBytes > 0) {
-                                    out.write(buffer, 0, readNumInBytes);
-                                }
-                            }
-                        }
-                        listener.onDownloadSuccessful(jobId, filename, url);
-                    } else {
-                        throw new IOException("Remote server has no response content.");
+            final long start = System.nanoTime();
+            if (started < 0) started = start;
+            if (dedup != null && !cancelled && linkDuplicate(filename)) {
+                settle();
+                return;
+            }
+            final PartFile partFile = PartFile.open(filepath);
+            retryAfter = 0;
+            checksums = null;
+            try {
+                transfer(partFile);
+                if (cancelled) {
+                    throw new InterruptedIOException("Download cancelled.");
+                }
+                final Checksums sums = getChecksums(partFile);
+                if (sums != null && verify) {
+                    try {
+                        sums.verify(request.getMd5(), request.getSha1());
+                    } catch (ChecksumMismatchException e) {
+                        partFile.discard();
+                        throw e;
                     }
+                }
+                partFile.complete();
+                if (request.lastModified >= 0) {
+                    Files.setLastModifiedTime(filepath, FileTime.fromMillis(request.lastModified));
+                }
+                final DownloadResult result = newResult(sums);
+                if (manifest != null) {
+                    manifest.add(filepath, result.bytes, result.md5, result.sha1);
+                }
+                if (dedup != null) {
+                    dedup.add(filepath, result.md5, result.sha1);
+                }
+                controller.onCompleted();
+                durationHistogram.observeNanos(System.nanoTime() - start);
+                successCounter.increment();
+                breaker.onSuccess(getHost());
+                listener.onDownloadSuccessful(jobId, filename, url);
+                future.complete(result);
+            } catch (IOException e) {
+                if (cancelled) {
+                    saveOrDiscard(partFile);
+                    settle();
+                    return;
+                }
+                controller.onError();
+                Logger.error(e.getLocalizedMessage());
+                saveOrDiscard(partFile);
+                if (e instanceof HttpStatusException && RetryPolicy.isThrottleStatus(((HttpStatusException) e).getStatusCode())) {
+                    long pause = breaker.onThrottle(getHost(), retryAfter);
+                    listener.onHostThrottled(getHost(), pause);
+                } else {
+                    breaker.onFailure(getHost());
+                }
+                if (retryPolicy.shouldRetry(retries, e)) {
+                    retries++;
+                    long delay = retryPolicy.getDelay(retries, retryAfter);
+                    retryCounter.increment();
+                    listener.onDownloadRetry(jobId, filename, url, retries, delay, e);
+                    schedule(this, delay);
+                    return;
+                }
+                failureCounter.increment();
+                listener.onDownloadFailure(jobId, filename, url, e);
+                future.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                settle();
+                throw e;
+            }
+            settle();
+        }
+
+        private void saveOrDiscard(@NotNull PartFile partFile) {
+            try {
+                if (partFile.isResumable()) {
+                    partFile.save();
                 } else {
+                    partFile.discard();
+                }
+            } catch (IOException ex) {
+                Logger.error("Failed to clean up \"" + partFile.part + "\"" + ex);
+            }
+        }
+
+        private DownloadResult newResult(@Nullable Checksums sums) throws IOException {
+            final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            return new DownloadResult(url, filepath, Files.size(filepath), duration, retries,
+                    sums == null ? null : sums.getMd5(), sums == null ? null : sums.getSha1());
+        }
+
+        /*
+         * Only listed checksums are worth computing: the manifest records "-" for the others and
+         * the dedup store is only looked up by listed checksums anyway.
+         */
+        private boolean wantsMd5() {
+            return verify && request.getMd5() != null;
+        }
+
+        /* Failing to link is not fatal, the file is simply fetched. */
+        private boolean linkDuplicate(@NotNull String filename) {
+            try {
+                if (!dedup.link(request, filepath)) {
+                    return false;
+                }
+                final long length = Files.size(filepath);
+                final DownloadResult result = new DownloadResult(url, filepath, length,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), retries, request.getMd5(), request.getSha1());
+                if (manifest != null) {
+                    manifest.add(filepath, length, result.md5, result.sha1);
+                }
+                dedupCounter.increment();
+                dedupBytesCounter.add(length);
+                successCounter.increment();
+                listener.onDownloadSuccessful(jobId, filename, url);
+                future.complete(result);
+                return true;
+            } catch (IOException e) {
+                Logger.waring("Unable to link \"" + filepath + "\" to identical content, downloading it: " + e.getMessage());
+                return false;
+            }
+        }
+
+        private boolean wantsSha1() {
+            return verify && request.getSha1() != null;
+        }
+
+        /*
+         * The inline digests when the transfer could compute them, segmented transfers and part
+         * files that were already complete have to be read back once instead.
+         */
+        private @Nullable Checksums getChecksums(@NotNull PartFile partFile) throws IOException {
+            if (checksums != null) {
+                return checksums;
+            }
+            if (!wantsMd5() && !wantsSha1()) {
+                return null;
+            }
+            Checksums sums = new Checksums(wantsMd5(), wantsSha1());
+            ByteBuffer pooled = BUFFERS.poll();
+            final ByteBuffer buffer = pooled != null ? pooled : ByteBuffer.allocateDirect(BUFFER_SIZE);
+            try (FileChannel channel = FileChannel.open(partFile.part, StandardOpenOption.READ)) {
+                sums.update(channel, channel.size(), buffer);
+            } finally {
+                BUFFERS.offer(buffer);
+            }
+            return sums;
+        }
+
+        /*
+         * A resumable part file asks for its first pending range under If-Range, a 206 carries on
+         * where the last run stopped while a 200 means the remote file changed and starts over.
+         */
+        private void transfer(@NotNull PartFile partFile) throws IOException {
+            final ResolutionCache resolutions = DownloadManager.this.resolutions;
+            final String resolved = resolutions != null ? resolutions.resolve(url.toString()) : null;
+            Request.Builder builder = new Request.Builder()
+                    .get();
+            if (resolved != null) {
+                builder.url(resolved);
+                resolvedCounter.increment();
+            } else {
+                builder.url(url);
+            }
+            if (partFile.isResumable()) {
+                List<PartFile.Range> pending = partFile.getPendingRanges();
+                if (pending.isEmpty()) return;
+                PartFile.Range range = pending.get(0);
+                builder.header("Range", "bytes=" + range.position + "-" + range.end)
+                        .header("If-Range", partFile.getValidator());
+            }
+            final long start = System.nanoTime();
+            try (Response response = execute(builder.build())) {
+                final long ttfb = System.nanoTime() - start;
+                controller.onFirstByte(ttfb);
+                ttfbHistogram.observeNanos(ttfb);
+                onResponse(response.code());
+                host = response.request().url().host();
+                if (!response.isSuccessful()) {
+                    retryAfter = RetryPolicy.parseRetryAfter(response.header("Retry-After"));
+                    if (resolved != null && !RetryPolicy.isThrottleStatus(response.code())) {
+                        /* The node may no longer hold the item, go through the redirect again right away. */
+                        invalidate(resolutions);
+                        response.close();
+                        transfer(partFile);
+                        return;
+                    }
+                    /* A throttling node is still where the item lives, and the breaker has to find it. */
+                    if (resolved == null && RetryPolicy.isThrottleStatus(response.code())
+                            && nodes.put(url.toString(), response.request().url().toString()) && resolutions != null) {
+                        learnedCounter.increment();
+                    }
                     Logger.error("Failed to request file! " + response.code());
                     throw new HttpStatusException("Failed to request file!", response.code(), url.toString());
                 }
+                if (resolved == null && nodes.put(url.toString(), response.request().url().toString())
+                        && resolutions != null) {
+                    learnedCounter.increment();
+                }
+                ResponseBody body = response.body();
+                if (body == null) {
+                    throw new ProtocolException("Remote server has no response content.");
+                }
+                if (response.code() != 206 || getTotalLength(response) == partFile.getLength()) {
+                    if (response.code() != 206) {
+                        final long length = body.contentLength();
+                        partFile.reset(length, response.header("ETag"), response.header("Last-Modified"), isSegmentable(response, length) ? segments : 1);
+                    }
+                    transferRanges(partFile, response.request().url(), body.source());
+                    return;
+                }
+                partFile.discard();
             } catch (IOException e) {
-                listener.onDownloadFailure(jobId, filename, url, e);
-                Logger.error(e.getLocalizedMessage());
-                if (filepath.toFile().exists()) {
+                /* A node that stopped answering is not asked again until a redirect points back to it. */
+                if (resolved != null && !cancelled && !(e instanceof HttpStatusException)) {
+                    invalidate(resolutions);
+                }
+                throw e;
+            }
+            transfer(partFile);
+        }
+
+        private void invalidate(@NotNull ResolutionCache resolutions) {
+            if (resolutions.invalidate(url.toString())) {
+                invalidatedCounter.increment();
+            }
+        }
+
+        private boolean isSegmentable(@NotNull Response response, long length) {
+            return segments > 1
+                    && length >= segmentThreshold
+                    && length > segments
+                    && "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+        }
+
+        /*
+         * The response already in flight serves the first pending range, the remaining ranges are
+         * requested from the resolved (post-redirect) URL and written at their own offsets.
+         */
+        private void transferRanges(@NotNull PartFile partFile, @NotNull HttpUrl target, @NotNull ReadableByteChannel source) throws IOException {
+            final List<PartFile.Range> pending = partFile.getPendingRanges();
+            try (FileChannel channel = partFile.openChannel();
+                 ProgressBar progressBar = progressBars ? newProgressBar(partFile) : null) {
+                final LongConsumer progress = progressBar != null ? progressBar::stepBy : count -> {};
+                if (partFile.getLength() > 0 && channel.size() < partFile.getLength()) {
+                    channel.write(ByteBuffer.allocate(1), partFile.getLength() - 1);
+                }
+                final PartFile.Range first = pending.get(0);
+                if ((wantsMd5() || wantsSha1()) && partFile.getRangeCount() == 1 && first.start == 0) {
+                    checksums = new Checksums(wantsMd5(), wantsSha1());
+                    if (first.position > 0) {
+                        ByteBuffer pooled = BUFFERS.poll();
+                        final ByteBuffer buffer = pooled != null ? pooled : ByteBuffer.allocateDirect(BUFFER_SIZE);
+                        try {
+                            checksums.update(channel, first.position, buffer);
+                        } finally {
+                            BUFFERS.offer(buffer);
+                        }
+                    }
+                }
+                List<Future<?>> futures = new ArrayList<>(pending.size());
+                for (PartFile.Range range : pending.subList(1, pending.size())) {
+                    futures.add(segmentExecutor.submit(() -> {
+                        downloadRange(target, range, partFile, channel, progress);
+                        return null;
+                    }));
+                }
+                IOException failure = null;
+                try {
+                    copy(source, channel, pending.get(0), partFile, progress);
+                } catch (IOException e) {
+                    failure = e;
+                }
+                for (Future<?> future : futures) {
                     try {
-                        Files.delete(filepath);
-                    } catch (IOException ex) {
-                        Logger.error("Failed to delete \"" + filepath + "\"" + ex);
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        if (failure == null) {
+                            failure = new InterruptedIOException("Interrupted while waiting for segments.");
+                        }
                     }
                 }
+                if (failure != null) {
+                    throw failure;
+                }
             }
-            listener.onJobCompleted(jobId);
+        }
+
+        private void downloadRange(@NotNull HttpUrl target, @NotNull PartFile.Range range, @NotNull PartFile partFile, @NotNull FileChannel channel, @NotNull LongConsumer progress) throws IOException {
+            Request.Builder builder = new Request.Builder()
+                    .url(target)
+                    .header("Range", "bytes=" + range.position + "-" + range.end)
+                    .get();
+            /* Without a validator a server ignores the Range of "If-Range: null" and sends it all. */
+            final String validator = partFile.getValidator();
+            if (validator != null) {
+                builder.header("If-Range", validator);
+            }
+            try (Response response = execute(builder.build())) {
+                onResponse(response.code());
+                ResponseBody body = response.body();
+                if (response.code() != 206 || body == null) {
+                    retryAfter = Math.max(retryAfter, RetryPolicy.parseRetryAfter(response.header("Retry-After")));
+                    throw new HttpStatusException("Failed to request range " + range.position + "-" + range.end + "!", response.code(), target.toString());
+                }
+                copy(body.source(), channel, range, partFile, progress);
+            }
+        }
+
+        /*
+         * Fills a large per-thread direct buffer from the socket before each positional write,
+         * progress and checkpoints are only touched once per megabyte instead of on every read.
+         */
+        private void copy(@NotNull ReadableByteChannel source, @NotNull FileChannel channel, @NotNull PartFile.Range range, @NotNull PartFile partFile, @NotNull LongConsumer progress) throws IOException {
+            ByteBuffer pooled = BUFFERS.poll();
+            final ByteBuffer buffer = pooled != null ? pooled : ByteBuffer.allocateDirect(BUFFER_SIZE);
+            final RateLimiter limiter = rateLimiter;
+            final Checksums sums = range.start == 0 ? checksums : null;
+            int chunk = BUFFER_SIZE;
+            if (limiter != null) chunk = limiter.getChunkSize(chunk);
+            if (jobLimiter != null) chunk = jobLimiter.getChunkSize(chunk);
+            long unsaved = 0;
+            long unreported = 0;
+            boolean eof = false;
+            try {
+                while (!eof && !range.isCompleted()) {
+                    if (cancelled) {
+                        throw new InterruptedIOException("Download cancelled.");
+                    }
+                    buffer.clear();
+                    buffer.limit((int) Math.min(chunk, range.remaining()));
+                    while (buffer.hasRemaining()) {
+                        if (source.read(buffer) == -1) {
+                            eof = true;
+                            break;
+                        }
+                    }
+                    buffer.flip();
+                    if (sums != null) sums.update(buffer);
+                    final int count = buffer.remaining();
+                    long position = range.position;
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    range.position = position;
+                    controller.onBytes(count);
+                    bytesCounter.add(count);
+                    if (limiter != null) limiter.acquire(count);
+                    if (jobLimiter != null) jobLimiter.acquire(count);
+                    unreported += count;
+                    unsaved += count;
+                    if (unreported >= PROGRESS_BYTES) {
+                        progress.accept(unreported);
+                        unreported = 0;
+                    }
+                    if (unsaved >= CHECKPOINT_BYTES) {
+                        partFile.save();
+                        unsaved = 0;
+                    }
+                }
+            } finally {
+                progress.accept(unreported);
+                BUFFERS.offer(buffer);
+            }
+            if (eof && range.end >= 0 && !range.isCompleted()) {
+                throw new EOFException("Unexpected end of stream at offset " + range.position + ".");
+            }
+        }
+
+        private ProgressBar newProgressBar(@NotNull PartFile partFile) {
+            return newProgressBarBuilder(jobId, getTaskName(), partFile.getLength())
+                    .startsFrom(partFile.getCompletedBytes(), Duration.ZERO)
+                    .build();
+        }
+
+        private void onResponse(int code) {
+            metrics.counter(Metrics.HTTP_RESPONSES, "HTTP responses by request kind and status code.",
+                    "kind", "download", "code", Integer.toString(code)).increment();
+        }
+
+        private long getTotalLength(@NotNull Response response) {
+            String contentRange = response.header("Content-Range");
+            if (contentRange == null || contentRange.endsWith("/*")) return -1;
+            try {
+                return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private String getTaskName() {
+            final String filename = filepath.getFileName().toString();
+            if (filename.length() > MAX_FILENAME_LENGTH) {
+                return filename.substring(0, MAX_FILENAME_LENGTH - 3) + "...";
+            }
+            return String.format("%-30s", filename);
         }
     }
 
     public interface DownloadEventListener {
-        void onDownloadSuccessful(int jobId, @Nullable String filename, @Nullable URL url);
+        default void onDownloadSuccessful(int jobId, @Nullable String filename, @Nullable URL url) {
+        }
 
-        void onDownloadFailure(int jobId, @Nullable String filename, @Nullable URL url, Exception e);
+        default void onDownloadFailure(int jobId, @Nullable String filename, @Nullable URL url, Exception e) {
+        }
+
+        /* Called once per download after it settled, whether it succeeded, failed or was cancelled. */
+        default void onJobCompleted(int jobId) {
+        }
 
-        void onJobCompleted(int jobId);
+        /* The attempt failed and the job is queued again after delay milliseconds. */
+        default void onDownloadRetry(int jobId, @Nullable String filename, @Nullable URL url, int retry, long delay, Exception e) {
+        }
+
+        /* The host answered 429/503, new requests to it are held back for pause milliseconds. */
+        default void onHostThrottled(@NotNull String host, long pause) {
+        }
     }
 }
@@ -0,0 +1,82 @@
+package org.archive.spider.download;
+
+import org.archive.spider.util.DigestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Kept compact since millions of these can be waiting in the queue: the URL and path are held
+ * as plain strings and checksums as raw bytes, the richer objects are rebuilt when the job starts.
+ */
+public class DownloadRequest {
+    private final String url;
+    private final String filepath;
+    /* What the file belongs to, used to interleave resources, null to group by host. */
+    public final String resource;
+    /* Remote values from the listing, -1 or null when unknown. */
+    public final long size;
+    public final long lastModified;
+    private final byte[] md5;
+    private final byte[] sha1;
+
+    public DownloadRequest(@NotNull URL url, @NotNull Path filepath) {
+        this(url, filepath, -1, -1, null, null);
+    }
+
+    public DownloadRequest(@NotNull URL url, @NotNull Path filepath, long size, long lastModified, @Nullable String md5, @Nullable String sha1) {
+        this(url, filepath, null, size, lastModified, md5, sha1);
+    }
+
+    public DownloadRequest(@NotNull URL url, @NotNull Path filepath, @Nullable String resource, long size, long lastModified, @Nullable String md5, @Nullable String sha1) {
+        this.url = url.toString();
+        this.filepath = filepath.toString();
+        this.resource = resource;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.md5 = md5 == null ? null : DigestUtils.fromHex(md5);
+        this.sha1 = sha1 == null ? null : DigestUtils.fromHex(sha1);
+    }
+
+    public URL getUrl() {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Path getFilepath() {
+        return Paths.get(filepath);
+    }
+
+    /* The URL as given, without building a URL object for it. */
+    @NotNull String getUrlString() {
+        return url;
+    }
+
+    public String getHost() {
+        return getHost(url);
+    }
+
+    static @NotNull String getHost(@NotNull String url) {
+        int start = url.indexOf("://") + 3;
+        int end = start;
+        while (end < url.length() && "/:?#".indexOf(url.charAt(end)) == -1) {
+            end++;
+        }
+        return url.substring(start, end);
+    }
+
+    public @Nullable String getMd5() {
+        return md5 == null ? null : DigestUtils.toHex(md5);
+    }
+
+    public @Nullable String getSha1() {
+        return sha1 == null ? null : DigestUtils.toHex(sha1);
+    }
+}
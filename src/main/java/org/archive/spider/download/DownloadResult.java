@@ -0,0 +1,43 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+import java.nio.file.Path;
+
+public class DownloadResult {
+    public final URL url;
+    public final Path filepath;
+    /* Length of the completed file. */
+    public final long bytes;
+    /* Milliseconds from the first attempt starting to the file being in place, retries included. */
+    public final long duration;
+    public final int retries;
+    /* Digests of the written file for the algorithms the request carried, null otherwise. */
+    public final String md5;
+    public final String sha1;
+
+    DownloadResult(@NotNull URL url, @NotNull Path filepath, long bytes, long duration, int retries, @Nullable String md5, @Nullable String sha1) {
+        this.url = url;
+        this.filepath = filepath;
+        this.bytes = bytes;
+        this.duration = duration;
+        this.retries = retries;
+        this.md5 = md5;
+        this.sha1 = sha1;
+    }
+
+    @Override
+    public String toString() {
+        return "DownloadResult{" +
+                "url=" + url +
+                ", filepath=" + filepath +
+                ", bytes=" + bytes +
+                ", duration=" + duration +
+                ", retries=" + retries +
+                ", md5='" + md5 + '\'' +
+                ", sha1='" + sha1 + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,46 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Append-only record of verified downloads, one tab separated line per file:
+ * path relative to the manifest, length, MD5 and SHA-1 ("-" when not computed).
+ */
+public class Manifest implements Closeable {
+
+    private final Path base;
+    private final BufferedWriter writer;
+
+    public Manifest(@NotNull Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        this.base = absolute.getParent();
+        this.writer = Files.newBufferedWriter(absolute, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public synchronized void add(@NotNull Path file, long length, @Nullable String md5, @Nullable String sha1) throws IOException {
+        writer.write(base.relativize(file.toAbsolutePath()).toString());
+        writer.write('\t');
+        writer.write(Long.toString(length));
+        writer.write('\t');
+        writer.write(md5 == null ? "-" : md5);
+        writer.write('\t');
+        writer.write(sha1 == null ? "-" : sha1);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,195 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/*
+ * An in-progress download: the ".part" file holding the bytes written so far and a
+ * ".part.meta" sidecar recording the expected length, the validator the bytes were
+ * fetched under, and how far each byte range has got.
+ */
+final class PartFile {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String META_SUFFIX = ".part.meta";
+
+    final Path target;
+    final Path part;
+    private final Path meta;
+
+    private long length = -1;
+    private String etag;
+    private String lastModified;
+    private List<Range> ranges = Collections.emptyList();
+
+    private PartFile(@NotNull Path target) {
+        this.target = target;
+        this.part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        this.meta = target.resolveSibling(target.getFileName() + META_SUFFIX);
+    }
+
+    static PartFile open(@NotNull Path target) {
+        PartFile file = new PartFile(target);
+        if (Files.exists(file.part) && Files.exists(file.meta)) {
+            try (InputStream in = Files.newInputStream(file.meta)) {
+                Properties properties = new Properties();
+                properties.load(in);
+                file.length = Long.parseLong(properties.getProperty("length", "-1"));
+                file.etag = properties.getProperty("etag");
+                file.lastModified = properties.getProperty("last-modified");
+                file.ranges = Range.parseAll(properties.getProperty("ranges", ""));
+            } catch (IOException | RuntimeException e) {
+                file.length = -1;
+                file.ranges = Collections.emptyList();
+            }
+        }
+        return file;
+    }
+
+    boolean isResumable() {
+        return length > 0 && !ranges.isEmpty() && getValidator() != null && Files.exists(part);
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    @Nullable
+    String getValidator() {
+        return etag != null ? etag : lastModified;
+    }
+
+    int getRangeCount() {
+        return ranges.size();
+    }
+
+    long getCompletedBytes() {
+        long completed = 0;
+        for (Range range : ranges) {
+            completed += range.position - range.start;
+        }
+        return completed;
+    }
+
+    List<Range> getPendingRanges() {
+        List<Range> pending = new ArrayList<>(ranges.size());
+        for (Range range : ranges) {
+            if (!range.isCompleted()) {
+                pending.add(range);
+            }
+        }
+        return pending;
+    }
+
+    void reset(long length, @Nullable String etag, @Nullable String lastModified, int segments) throws IOException {
+        discard();
+        this.length = length;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        if (length <= 0) {
+            ranges = Collections.singletonList(new Range(0, -1, 0));
+            return;
+        }
+        final long segmentSize = (length + segments - 1) / segments;
+        List<Range> ranges = new ArrayList<>(segments);
+        for (long from = 0; from < length; from += segmentSize) {
+            ranges.add(new Range(from, Math.min(length, from + segmentSize) - 1, from));
+        }
+        this.ranges = ranges;
+        save();
+    }
+
+    FileChannel openChannel() throws IOException {
+        return FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    synchronized void save() throws IOException {
+        if (length <= 0) return;
+        Properties properties = new Properties();
+        properties.setProperty("length", Long.toString(length));
+        if (etag != null) properties.setProperty("etag", etag);
+        if (lastModified != null) properties.setProperty("last-modified", lastModified);
+        properties.setProperty("ranges", Range.formatAll(ranges));
+        Path tmp = meta.resolveSibling(meta.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, null);
+        }
+        move(tmp, meta);
+    }
+
+    void complete() throws IOException {
+        move(part, target);
+        Files.deleteIfExists(meta);
+    }
+
+    void discard() throws IOException {
+        Files.deleteIfExists(part);
+        Files.deleteIfExists(meta);
+    }
+
+    private static void move(@NotNull Path source, @NotNull Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static final class Range {
+        final long start;
+        /* Inclusive, -1 when the length is unknown and the range runs to the end of the stream. */
+        final long end;
+        volatile long position;
+
+        Range(long start, long end, long position) {
+            this.start = start;
+            this.end = end;
+            this.position = position;
+        }
+
+        boolean isCompleted() {
+            return end >= 0 && position > end;
+        }
+
+        long remaining() {
+            return end < 0 ? Long.MAX_VALUE : end - position + 1;
+        }
+
+        static List<Range> parseAll(@NotNull String str) {
+            List<Range> ranges = new ArrayList<>();
+            for (String it : str.split(",")) {
+                if (it.isEmpty()) continue;
+                int dash = it.indexOf('-');
+                int colon = it.indexOf(':');
+                ranges.add(new Range(
+                        Long.parseLong(it.substring(0, dash)),
+                        Long.parseLong(it.substring(dash + 1, colon)),
+                        Long.parseLong(it.substring(colon + 1))));
+            }
+            return ranges;
+        }
+
+        static String formatAll(@NotNull List<Range> ranges) {
+            StringBuilder builder = new StringBuilder();
+            for (Range range : ranges) {
+                if (builder.length() > 0) builder.append(',');
+                builder.append(range.start).append('-').append(range.end).append(':').append(range.position);
+            }
+            return builder.toString();
+        }
+    }
+}
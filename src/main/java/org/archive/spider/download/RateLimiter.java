@@ -0,0 +1,138 @@
+package org.archive.spider.download;
+
+import org.archive.spider.util.ByteFormatter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InterruptedIOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Token bucket in bytes per second shared by any number of readers. Tokens may go negative:
+ * a reader takes what it has just read and sleeps off its share of the debt, so acquiring is
+ * a single atomic add and no lock is ever held. A schedule can switch the rate by time of day,
+ * a rate of 0 means unlimited.
+ */
+public final class RateLimiter {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int MIN_CHUNK = 16 * 1024;
+
+    private final long defaultRate;
+    private final List<Window> schedule;
+    private final AtomicLong tokens = new AtomicLong(0);
+    private final AtomicLong lastRefill = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastScheduleCheck = new AtomicLong(System.nanoTime());
+    private volatile long rate;
+
+    public RateLimiter(long rate) {
+        this(rate, Collections.emptyList());
+    }
+
+    public RateLimiter(long rate, @NotNull List<Window> schedule) {
+        this.defaultRate = Math.max(0, rate);
+        this.schedule = new ArrayList<>(schedule);
+        this.rate = rateAt(LocalTime.now());
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    public void acquire(long bytes) throws InterruptedIOException {
+        checkSchedule();
+        final long rate = this.rate;
+        if (rate <= 0) return;
+        refill(rate);
+        final long remaining = tokens.addAndGet(-bytes);
+        if (remaining < 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(-remaining * SECOND / rate);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling.");
+            }
+        }
+    }
+
+    /* Reads are capped to a tenth of a second worth of bytes so throttled transfers stay smooth. */
+    int getChunkSize(int max) {
+        final long rate = this.rate;
+        if (rate <= 0) return max;
+        return (int) Math.max(MIN_CHUNK, Math.min(max, rate / 10));
+    }
+
+    private void refill(long rate) {
+        final long now = System.nanoTime();
+        final long last = lastRefill.get();
+        final long elapsed = now - last;
+        if (elapsed < TimeUnit.MILLISECONDS.toNanos(1) || !lastRefill.compareAndSet(last, now)) return;
+        /* Everything earned since the last refill pays off debt, only a surplus is capped at a one second burst. */
+        long added;
+        try {
+            added = Math.addExact(Math.multiplyExact(elapsed / SECOND, rate), elapsed % SECOND * rate / SECOND);
+        } catch (ArithmeticException e) {
+            added = Long.MAX_VALUE;
+        }
+        tokens.accumulateAndGet(added, (current, it) -> it >= rate - current ? Math.max(current, rate) : current + it);
+    }
+
+    private void checkSchedule() {
+        if (schedule.isEmpty()) return;
+        final long now = System.nanoTime();
+        final long last = lastScheduleCheck.get();
+        if (now - last >= SECOND && lastScheduleCheck.compareAndSet(last, now)) {
+            rate = rateAt(LocalTime.now());
+        }
+    }
+
+    private long rateAt(@NotNull LocalTime time) {
+        for (Window window : schedule) {
+            if (window.contains(time)) {
+                return window.rate;
+            }
+        }
+        return defaultRate;
+    }
+
+    /* "08:00-18:00=2M,18:00-08:00=0" */
+    public static List<Window> parseSchedule(@NotNull String str) {
+        List<Window> windows = new ArrayList<>();
+        for (String it : str.split(",")) {
+            if (it.isEmpty()) continue;
+            final int equals = it.indexOf('=');
+            final int dash = it.indexOf('-');
+            if (equals == -1 || dash == -1 || dash > equals) {
+                throw new IllegalArgumentException("Invalid rate schedule \"" + it + "\"");
+            }
+            windows.add(new Window(
+                    LocalTime.parse(it.substring(0, dash).trim()),
+                    LocalTime.parse(it.substring(dash + 1, equals).trim()),
+                    ByteFormatter.parse(it.substring(equals + 1))));
+        }
+        return windows;
+    }
+
+    public static final class Window {
+        public final LocalTime from;
+        public final LocalTime to;
+        public final long rate;
+
+        public Window(@NotNull LocalTime from, @NotNull LocalTime to, long rate) {
+            this.from = from;
+            this.to = to;
+            this.rate = Math.max(0, rate);
+        }
+
+        boolean contains(@NotNull LocalTime time) {
+            if (from.isBefore(to)) {
+                return !time.isBefore(from) && time.isBefore(to);
+            }
+            return !time.isBefore(from) || time.isBefore(to);
+        }
+    }
+}
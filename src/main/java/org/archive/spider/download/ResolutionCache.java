@@ -0,0 +1,95 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Remembers where the downloads of an item were redirected to, so later files of the item are
+ * requested from the data node directly instead of paying the redirect on every one of them.
+ * A redirect of ".../download/item/disc1/01.mp3" to ".../12/items/item/disc1/01.mp3" is learned
+ * as ".../download/item/" -> ".../12/items/item/": the common tail of both paths is the file
+ * path, its first segment the item. Entries expire after the TTL and are dropped as soon as a
+ * request to the resolved location fails.
+ */
+final class ResolutionCache {
+
+    private final long ttl;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    ResolutionCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /* The URL to request instead of url, null when nothing usable is known. */
+    @Nullable String resolve(@NotNull String url) {
+        if (url.indexOf('?') != -1) return null;
+        final long now = System.currentTimeMillis();
+        for (int index = url.indexOf('/', getPathStart(url) + 1); index != -1; index = url.indexOf('/', index + 1)) {
+            final String prefix = url.substring(0, index + 1);
+            final Entry entry = entries.get(prefix);
+            if (entry == null) continue;
+            if (entry.expires < now) {
+                entries.remove(prefix, entry);
+                return null;
+            }
+            return entry.target + url.substring(index + 1);
+        }
+        return null;
+    }
+
+    /* Host of the data node url would be requested from, null when nothing usable is known. */
+    @Nullable String resolveHost(@NotNull String url) {
+        final String resolved = resolve(url);
+        return resolved != null ? DownloadRequest.getHost(resolved) : null;
+    }
+
+    /* Learns from a request for url that ended up at resolved, true if that was a redirect. */
+    boolean put(@NotNull String url, @NotNull String resolved) {
+        if (url.equals(resolved) || url.indexOf('?') != -1 || resolved.indexOf('?') != -1) return false;
+        final int urlPath = getPathStart(url);
+        final int resolvedPath = getPathStart(resolved);
+        if (urlPath == -1 || resolvedPath == -1) return false;
+        int i = url.length();
+        int j = resolved.length();
+        while (i > urlPath && j > resolvedPath && url.charAt(i - 1) == resolved.charAt(j - 1)) {
+            i--;
+            j--;
+        }
+        /* Start the common tail at a segment boundary, then keep its first segment as the item. */
+        final int boundary = url.indexOf('/', i);
+        if (boundary == -1) return false;
+        j += boundary - i;
+        final int item = url.indexOf('/', boundary + 1);
+        if (item == -1) return false;
+        final int length = item - boundary;
+        entries.put(url.substring(0, item + 1),
+                new Entry(resolved.substring(0, j + length + 1), System.currentTimeMillis() + ttl));
+        return true;
+    }
+
+    /* Forgets what was learned for the item url belongs to, false if there was nothing. */
+    boolean invalidate(@NotNull String url) {
+        for (int index = url.indexOf('/', getPathStart(url) + 1); index != -1; index = url.indexOf('/', index + 1)) {
+            if (entries.remove(url.substring(0, index + 1)) != null) return true;
+        }
+        return false;
+    }
+
+    private static int getPathStart(@NotNull String url) {
+        final int scheme = url.indexOf("://");
+        return url.indexOf('/', scheme == -1 ? 0 : scheme + 3);
+    }
+
+    private static final class Entry {
+        final String target;
+        final long expires;
+
+        Entry(@NotNull String target, long expires) {
+            this.target = target;
+            this.expires = expires;
+        }
+    }
+}
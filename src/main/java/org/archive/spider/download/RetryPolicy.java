@@ -0,0 +1,97 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jsoup.HttpStatusException;
+
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Exponential backoff with full jitter, never shorter than what the server asked for in Retry-After.
+ */
+public class RetryPolicy {
+
+    public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0);
+
+    public final int maxRetries;
+    public final long baseDelay;
+    public final long maxDelay;
+
+    public RetryPolicy(int maxRetries, long baseDelay, long maxDelay) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+    }
+
+    public boolean shouldRetry(int retries, @NotNull IOException e) {
+        return retries < maxRetries && isRetryable(e);
+    }
+
+    /* Milliseconds to wait before the given retry (starting at 1). */
+    public long getDelay(int retry, long retryAfter) {
+        long ceiling = baseDelay << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelay) ceiling = maxDelay;
+        long delay = ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1) : 0;
+        return Math.max(delay, retryAfter);
+    }
+
+    /*
+     * Retryable statuses and failures of the connection or the transfer, checked along the
+     * cause chain since clients wrap them ("unexpected end of stream" around an EOFException).
+     * Local errors such as a full disk or a denied file are not going to pass by waiting.
+     */
+    public static boolean isRetryable(@NotNull IOException e) {
+        if (e instanceof HttpStatusException) {
+            return isRetryableStatus(((HttpStatusException) e).getStatusCode());
+        }
+        for (Throwable it = e; it != null; it = it.getCause() == it ? null : it.getCause()) {
+            if (isTransportFailure(it)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isTransportFailure(@NotNull Throwable e) {
+        return e instanceof SocketException
+                || e instanceof SocketTimeoutException
+                || e instanceof UnknownHostException
+                || e instanceof SSLException
+                || e instanceof ProtocolException
+                || e instanceof EOFException
+                || e instanceof ChecksumMismatchException
+                /* HTTP/2 stream resets and shut down connections, internal to OkHttp. */
+                || e.getClass().getName().startsWith("okhttp3.internal.");
+    }
+
+    public static boolean isRetryableStatus(int code) {
+        return code == 408 || code == 425 || code == 429 || code >= 500;
+    }
+
+    public static boolean isThrottleStatus(int code) {
+        return code == 429 || code == 503;
+    }
+
+    /* Retry-After as delta seconds or an HTTP date, in milliseconds from now (0 when absent). */
+    public static long parseRetryAfter(@Nullable String value) {
+        if (value == null || value.isEmpty()) return 0;
+        try {
+            return Math.max(0, Long.parseLong(value.trim()) * 1000);
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            long at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+}
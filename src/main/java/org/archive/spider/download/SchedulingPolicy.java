@@ -0,0 +1,36 @@
+package org.archive.spider.download;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/*
+ * Order in which queued downloads are started. Starting the largest files first keeps one big
+ * file found late from running on alone at the end, round-robin interleaves resources so each
+ * makes progress instead of finishing one after another.
+ */
+public enum SchedulingPolicy {
+    FIFO("fifo"),
+    LARGEST_FIRST("largest"),
+    SMALLEST_FIRST("smallest"),
+    ROUND_ROBIN("round-robin");
+
+    private final String option;
+
+    SchedulingPolicy(@NotNull String option) {
+        this.option = option;
+    }
+
+    boolean isSizeAware() {
+        return this == LARGEST_FIRST || this == SMALLEST_FIRST;
+    }
+
+    public static SchedulingPolicy parse(@NotNull String str) {
+        for (SchedulingPolicy policy : values()) {
+            if (policy.option.equals(str.toLowerCase(Locale.ROOT))) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scheduling policy \"" + str + "\"");
+    }
+}
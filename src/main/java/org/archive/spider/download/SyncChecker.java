@@ -0,0 +1,152 @@
+package org.archive.spider.download;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.archive.spider.util.DigestUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Decides whether a local copy is still current by comparing length and mtime against
+ * the remote values, hashing only when those agree on length but not on time.
+ */
+public class SyncChecker {
+
+    private static final long MTIME_TOLERANCE = 2000;
+
+    private final OkHttpClient client;
+    private DedupIndex dedup;
+    /* One directory scan serves every lookup in that directory. */
+    private final Map<Path, Map<String, BasicFileAttributes>> directories = new ConcurrentHashMap<>();
+
+    public SyncChecker(@NotNull OkHttpClient client) {
+        this.client = client;
+    }
+
+    /* Files linked to this store are compared by size and checksum only, see check(). */
+    public void setDedup(@Nullable DedupIndex dedup) {
+        this.dedup = dedup;
+    }
+
+    public Decision check(@NotNull DownloadRequest request) {
+        final Path filepath = request.getFilepath();
+        BasicFileAttributes local = stat(filepath);
+        if (local == null) {
+            return Decision.NEW;
+        }
+        long size = request.size;
+        long lastModified = request.lastModified;
+        if (size < 0) {
+            long[] remote = head(client, request);
+            size = remote[0];
+            lastModified = remote[1];
+        }
+        if (size < 0) {
+            return Decision.SKIP;
+        }
+        if (local.size() != size) {
+            return Decision.UPDATE;
+        }
+        long localModified = local.lastModifiedTime().toMillis();
+        if (lastModified >= 0 && Math.abs(localModified - lastModified) < MTIME_TOLERANCE) {
+            return Decision.SKIP;
+        }
+        final String md5 = request.getMd5();
+        final String sha1 = request.getSha1();
+        /*
+         * A deduplicated file carries the mtime of whichever item stored the content first and
+         * shares it with every other copy, resetting it here would only flip it for all of them.
+         */
+        if (dedup != null && (md5 != null || sha1 != null) && dedup.holds(filepath, md5, sha1)) {
+            return Decision.SKIP;
+        }
+        if (md5 != null || sha1 != null) {
+            try {
+                boolean matches = md5 != null
+                        ? md5.equalsIgnoreCase(DigestUtils.digest(filepath, "MD5"))
+                        : sha1.equalsIgnoreCase(DigestUtils.digest(filepath, "SHA-1"));
+                if (matches && lastModified >= 0 && !isShared(filepath)) {
+                    Files.setLastModifiedTime(filepath, FileTime.fromMillis(lastModified));
+                }
+                return matches ? Decision.SKIP : Decision.UPDATE;
+            } catch (IOException e) {
+                return Decision.UPDATE;
+            }
+        }
+        return lastModified > localModified ? Decision.UPDATE : Decision.SKIP;
+    }
+
+    /* More than one link to the inode, where the file system can tell. */
+    private static boolean isShared(@NotNull Path file) {
+        try {
+            Object links = Files.getAttribute(file, "unix:nlink");
+            return links instanceof Integer && (Integer) links > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return false;
+        }
+    }
+
+    private @Nullable BasicFileAttributes stat(@NotNull Path file) {
+        Path parent = file.toAbsolutePath().getParent();
+        return directories.computeIfAbsent(parent, this::scan).get(file.getFileName().toString());
+    }
+
+    private Map<String, BasicFileAttributes> scan(@NotNull Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyMap();
+        }
+        Map<String, BasicFileAttributes> attributes = new HashMap<>();
+        try {
+            Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        attributes.put(file.getFileName().toString(), attrs);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ignored) {
+        }
+        return attributes;
+    }
+
+    /* Remote length and mtime, -1 for whatever the server does not tell. */
+    static long[] head(@NotNull OkHttpClient client, @NotNull DownloadRequest request) {
+        Request head = new Request.Builder()
+                .url(request.getUrl())
+                .head()
+                .build();
+        try (Response response = client.newCall(head).execute()) {
+            if (!response.isSuccessful()) {
+                return new long[]{-1, -1};
+            }
+            String length = response.header("Content-Length");
+            String modified = response.header("Last-Modified");
+            return new long[]{
+                    length == null ? -1 : Long.parseLong(length.trim()),
+                    modified == null ? -1 : ZonedDateTime.parse(modified, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+            };
+        } catch (IOException | NumberFormatException | DateTimeParseException e) {
+            return new long[]{-1, -1};
+        }
+    }
+
+    public enum Decision {
+        NEW, UPDATE, SKIP
+    }
+}
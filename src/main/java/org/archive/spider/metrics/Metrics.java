@@ -0,0 +1,23 @@
+package org.archive.spider.metrics;
+
+/* Names of the metrics shared between the places that record them and the reporters. */
+public final class Metrics {
+    private Metrics() {}
+
+    public static final String DOWNLOAD_BYTES = "archive_download_bytes_total";
+    public static final String DOWNLOAD_TTFB = "archive_download_ttfb_seconds";
+    public static final String DOWNLOAD_DURATION = "archive_download_duration_seconds";
+    public static final String DOWNLOADS = "archive_downloads_total";
+    public static final String DOWNLOAD_RETRIES = "archive_download_retries_total";
+    public static final String QUEUE_DEPTH = "archive_download_queue_depth";
+    public static final String ACTIVE_JOBS = "archive_download_active_jobs";
+    public static final String CONCURRENCY = "archive_download_concurrency_limit";
+    public static final String DEDUP_FILES = "archive_dedup_files_total";
+    public static final String DEDUP_BYTES = "archive_dedup_bytes_total";
+    public static final String RESOLUTIONS = "archive_download_resolutions_total";
+    public static final String HTTP_RESPONSES = "archive_http_responses_total";
+    public static final String CRAWL_PAGES = "archive_crawl_pages_total";
+    public static final String CRAWL_PAGE_DURATION = "archive_crawl_page_seconds";
+    public static final String FILES_FOUND = "archive_files_found";
+    public static final String FILES_SKIPPED = "archive_files_skipped";
+}
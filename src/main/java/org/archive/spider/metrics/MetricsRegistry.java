@@ -0,0 +1,168 @@
+package org.archive.spider.metrics;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/*
+ * Named counters, gauges and histograms, each optionally split by label pairs
+ * ("code", "200"). Looking a metric up again returns the already registered one, so hot paths
+ * should keep hold of what they register rather than looking it up on every event.
+ */
+public final class MetricsRegistry {
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public Counter counter(@NotNull String name, @NotNull String help, @NotNull String... labels) {
+        return (Counter) family(name, help, Type.COUNTER, null).children
+                .computeIfAbsent(formatLabels(labels), it -> new Counter());
+    }
+
+    public Histogram histogram(@NotNull String name, @NotNull String help, double @NotNull [] bounds, @NotNull String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM, null).children
+                .computeIfAbsent(formatLabels(labels), it -> new Histogram(bounds));
+    }
+
+    /* The supplier is sampled whenever the registry is exported. */
+    public void gauge(@NotNull String name, @NotNull String help, @NotNull DoubleSupplier supplier) {
+        family(name, help, Type.GAUGE, supplier);
+    }
+
+    /* Current value of a counter or gauge summed over all its labels, 0 if it is not registered. */
+    public double getValue(@NotNull String name) {
+        Family family = families.get(name);
+        if (family == null) return 0;
+        if (family.type == Type.GAUGE) return family.supplier.getAsDouble();
+        double value = 0;
+        for (Object it : family.children.values()) {
+            value += it instanceof Counter ? ((Counter) it).get() : ((Histogram) it).getCount();
+        }
+        return value;
+    }
+
+    /* Prometheus text exposition format, version 0.0.4. */
+    public void writePrometheus(@NotNull Appendable out) throws IOException {
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.name().toLowerCase(Locale.ROOT)).append('\n');
+            if (family.type == Type.GAUGE) {
+                out.append(family.name).append(' ').append(formatValue(family.supplier.getAsDouble())).append('\n');
+                continue;
+            }
+            for (Map.Entry<String, Object> entry : family.children.entrySet()) {
+                final String labels = entry.getKey();
+                if (entry.getValue() instanceof Counter) {
+                    out.append(family.name).append(wrapLabels(labels)).append(' ')
+                            .append(Long.toString(((Counter) entry.getValue()).get())).append('\n');
+                    continue;
+                }
+                Histogram histogram = (Histogram) entry.getValue();
+                long[] counts = histogram.getCumulativeCounts();
+                for (int i = 0; i < counts.length; i++) {
+                    String le = i < histogram.bounds.length ? formatValue(histogram.bounds[i]) : "+Inf";
+                    String bucketLabels = labels.isEmpty() ? "le=\"" + le + "\"" : labels + ",le=\"" + le + "\"";
+                    out.append(family.name).append("_bucket{").append(bucketLabels).append("} ")
+                            .append(Long.toString(counts[i])).append('\n');
+                }
+                out.append(family.name).append("_sum").append(wrapLabels(labels)).append(' ')
+                        .append(formatValue(histogram.getSum())).append('\n');
+                out.append(family.name).append("_count").append(wrapLabels(labels)).append(' ')
+                        .append(Long.toString(counts[counts.length - 1])).append('\n');
+            }
+        }
+    }
+
+    /* Plain values for unlabelled metrics, an object keyed by labels otherwise. */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        for (Family family : families.values()) {
+            if (family.type == Type.GAUGE) {
+                json.addProperty(family.name, family.supplier.getAsDouble());
+                continue;
+            }
+            JsonObject children = new JsonObject();
+            for (Map.Entry<String, Object> entry : family.children.entrySet()) {
+                final String key = entry.getKey().isEmpty() ? "value" : entry.getKey();
+                if (entry.getValue() instanceof Counter) {
+                    children.addProperty(key, ((Counter) entry.getValue()).get());
+                    continue;
+                }
+                Histogram histogram = (Histogram) entry.getValue();
+                long[] counts = histogram.getCumulativeCounts();
+                JsonObject buckets = new JsonObject();
+                for (int i = 0; i < counts.length; i++) {
+                    buckets.addProperty(i < histogram.bounds.length ? formatValue(histogram.bounds[i]) : "+Inf", counts[i]);
+                }
+                JsonObject it = new JsonObject();
+                it.addProperty("count", counts[counts.length - 1]);
+                it.addProperty("sum", histogram.getSum());
+                it.add("buckets", buckets);
+                children.add(key, it);
+            }
+            if (children.size() == 1 && children.has("value")) {
+                json.add(family.name, children.get("value"));
+            } else {
+                json.add(family.name, children);
+            }
+        }
+        return json;
+    }
+
+    private Family family(@NotNull String name, @NotNull String help, @NotNull Type type, DoubleSupplier supplier) {
+        Family family = families.computeIfAbsent(name, it -> new Family(name, help, type, supplier));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric \"" + name + "\" is already registered as a " + family.type.name().toLowerCase(Locale.ROOT));
+        }
+        return family;
+    }
+
+    private static String formatLabels(@NotNull String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be given as name and value pairs.");
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (builder.length() > 0) builder.append(',');
+            builder.append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return builder.toString();
+    }
+
+    private static String wrapLabels(@NotNull String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final DoubleSupplier supplier;
+        /* Keyed by the formatted label set, "" when unlabelled. */
+        final Map<String, Object> children = new ConcurrentSkipListMap<>();
+
+        Family(@NotNull String name, @NotNull String help, @NotNull Type type, DoubleSupplier supplier) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.supplier = supplier;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.archive.spider.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.archive.spider.util.ByteFormatter;
+import org.archive.spider.util.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Periodic views of the registry: a JSON snapshot rewritten in place, and a single status line
+ * redrawn on the terminal in place of one progress bar per job.
+ */
+public final class MetricsReporter {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final MetricsRegistry registry;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Rate dumpBytes = new Rate(Metrics.DOWNLOAD_BYTES);
+    private final Rate dumpPages = new Rate(Metrics.CRAWL_PAGES);
+    private final Rate progressBytes = new Rate(Metrics.DOWNLOAD_BYTES);
+    private Path dumpFile;
+    private boolean progress;
+
+    public MetricsReporter(@NotNull MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void startDump(@NotNull Path file, long interval) {
+        dumpFile = file;
+        scheduler.scheduleAtFixedRate(this::dump, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void startProgress(long interval) {
+        progress = true;
+        scheduler.scheduleAtFixedRate(this::printProgress, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /* Writes a last snapshot and ends the status line. */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dumpFile != null) {
+            dump();
+        }
+        if (progress) {
+            printProgress();
+            System.out.println();
+        }
+    }
+
+    private synchronized void dump() {
+        JsonObject json = new JsonObject();
+        json.addProperty("timestamp", System.currentTimeMillis());
+        json.addProperty("bytes_per_second", dumpBytes.sample());
+        json.addProperty("pages_per_second", dumpPages.sample());
+        json.add("metrics", registry.toJson());
+        Path tmp = dumpFile.resolveSibling(dumpFile.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                GSON.toJson(json, writer);
+            }
+            try {
+                Files.move(tmp, dumpFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, dumpFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Logger.waring("Unable to write metrics to \"" + dumpFile + "\": " + e.getMessage());
+        }
+    }
+
+    private synchronized void printProgress() {
+        final long found = (long) registry.getValue(Metrics.FILES_FOUND);
+        final long skipped = (long) registry.getValue(Metrics.FILES_SKIPPED);
+        final long done = (long) registry.getValue(Metrics.DOWNLOADS);
+        final String line = String.format("\rFiles: %d/%d  Skip: %d  Active: %d  Queue: %d  Speed: %s/s  Total: %s  Pages: %d",
+                done + skipped, found, skipped,
+                (long) registry.getValue(Metrics.ACTIVE_JOBS),
+                (long) registry.getValue(Metrics.QUEUE_DEPTH),
+                ByteFormatter.format((long) progressBytes.sample()),
+                ByteFormatter.format((long) registry.getValue(Metrics.DOWNLOAD_BYTES)),
+                (long) registry.getValue(Metrics.CRAWL_PAGES));
+        System.out.print(line + "\u001B[K");
+        System.out.flush();
+    }
+
+    /* Per second change of a counter since the previous sample of this view. */
+    private final class Rate {
+        private final String name;
+        private double lastValue;
+        private long lastTime = System.nanoTime();
+
+        Rate(@NotNull String name) {
+            this.name = name;
+        }
+
+        double sample() {
+            final double value = registry.getValue(name);
+            final long now = System.nanoTime();
+            final double rate = now == lastTime ? 0 : (value - lastValue) * 1e9 / (now - lastTime);
+            lastValue = value;
+            lastTime = now;
+            return rate;
+        }
+    }
+}
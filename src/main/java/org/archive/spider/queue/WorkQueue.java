@@ -0,0 +1,201 @@
+package org.archive.spider.queue;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Durable work queue shared through a directory, so any number of processes on one machine
+ * (or on hosts sharing the directory) can take part. Every item is one file and every state
+ * change is an atomic rename, whoever wins the rename owns the item:
+ *
+ *   pending/<id>.<attempt>   waiting to be leased
+ *   leased/<id>.<attempt>    taken by a worker, its mtime is the last heartbeat
+ *   done/<id>.<attempt>      acknowledged
+ *   failed/<id>.<attempt>    given up on after too many expired or failed leases
+ *
+ * A lease whose heartbeat is older than the lease timeout is moved back to pending by whichever
+ * process notices first. The coordinator seals the queue once everything is enqueued.
+ */
+public class WorkQueue {
+
+    private static final String SEALED = "sealed";
+
+    private final Path pending;
+    private final Path leased;
+    private final Path done;
+    private final Path failed;
+    private final Path sealed;
+    private final long leaseTimeout;
+    private final int maxAttempts;
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final AtomicLong lastReclaim = new AtomicLong(0);
+
+    public WorkQueue(@NotNull Path directory, long leaseTimeout, int maxAttempts) throws IOException {
+        this.pending = Files.createDirectories(directory.resolve("pending"));
+        this.leased = Files.createDirectories(directory.resolve("leased"));
+        this.done = Files.createDirectories(directory.resolve("done"));
+        this.failed = Files.createDirectories(directory.resolve("failed"));
+        this.sealed = directory.resolve(SEALED);
+        this.leaseTimeout = leaseTimeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /* Ids sort in submission order so workers lease items roughly in the order they were put. */
+    public void put(@NotNull List<String> lines) throws IOException {
+        final String id = String.format("%012d-%s", sequence.incrementAndGet(), UUID.randomUUID().toString().substring(0, 8));
+        Path tmp = pending.resolveSibling(id + ".tmp");
+        Files.write(tmp, lines, StandardCharsets.UTF_8);
+        Files.move(tmp, pending.resolve(id + ".1"), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void seal() throws IOException {
+        if (!Files.exists(sealed)) {
+            Files.createFile(sealed);
+        }
+    }
+
+    public boolean isSealed() {
+        return Files.exists(sealed);
+    }
+
+    /* Sealed and nothing left pending or leased. */
+    public boolean isFinished() throws IOException {
+        return isSealed() && count(pending) == 0 && count(leased) == 0;
+    }
+
+    /* Null when nothing is pending right now, which does not mean the queue is finished. */
+    public @Nullable Lease lease() throws IOException {
+        reclaim(false);
+        while (true) {
+            Path first = null;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(pending)) {
+                for (Path path : stream) {
+                    if (first == null || path.getFileName().toString().compareTo(first.getFileName().toString()) < 0) {
+                        first = path;
+                    }
+                }
+            }
+            if (first == null) {
+                return null;
+            }
+            try {
+                /* Stamp the heartbeat before the rename so the lease is never seen expired. */
+                Files.setLastModifiedTime(first, FileTime.fromMillis(System.currentTimeMillis()));
+                Path target = leased.resolve(first.getFileName());
+                Files.move(first, target, StandardCopyOption.ATOMIC_MOVE);
+                return new Lease(target, Files.readAllLines(target, StandardCharsets.UTF_8));
+            } catch (NoSuchFileException e) {
+                /* Another worker won this one, try the next. */
+            }
+        }
+    }
+
+    /*
+     * Moves expired leases back to pending, or to failed after maxAttempts. Runs at most once
+     * per quarter lease timeout in this process unless forced.
+     */
+    public int reclaim(boolean force) throws IOException {
+        final long now = System.currentTimeMillis();
+        final long last = lastReclaim.get();
+        if (!force && (now - last < leaseTimeout / 4 || !lastReclaim.compareAndSet(last, now))) {
+            return 0;
+        }
+        int reclaimed = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(leased)) {
+            for (Path path : stream) {
+                try {
+                    if (now - Files.getLastModifiedTime(path).toMillis() > leaseTimeout) {
+                        release(path);
+                        reclaimed++;
+                    }
+                } catch (NoSuchFileException ignored) {
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    public int countPending() throws IOException {
+        return count(pending);
+    }
+
+    public int countLeased() throws IOException {
+        return count(leased);
+    }
+
+    public int countDone() throws IOException {
+        return count(done);
+    }
+
+    public int countFailed() throws IOException {
+        return count(failed);
+    }
+
+    private void release(@NotNull Path path) throws IOException {
+        final String name = path.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+        final int attempt = Integer.parseInt(name.substring(dot + 1)) + 1;
+        final Path target = attempt > maxAttempts
+                ? failed.resolve(name)
+                : pending.resolve(name.substring(0, dot + 1) + attempt);
+        Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int count(@NotNull Path directory) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path ignored : stream) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public final class Lease {
+        private final Path path;
+        public final List<String> lines;
+
+        private Lease(@NotNull Path path, @NotNull List<String> lines) {
+            this.path = path;
+            this.lines = lines;
+        }
+
+        /* False once the lease expired and was handed to someone else. */
+        public boolean renew() {
+            try {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        public void ack() throws IOException {
+            try {
+                Files.move(path, done.resolve(path.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException ignored) {
+                /* Reclaimed meanwhile, whoever leases it next finds the files already in place. */
+            }
+        }
+
+        /* Hands the item back right away instead of waiting for the lease to expire. */
+        public void fail() throws IOException {
+            try {
+                release(path);
+            } catch (NoSuchFileException ignored) {
+            }
+        }
+    }
+}
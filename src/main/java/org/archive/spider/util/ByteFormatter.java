@@ -1,5 +1,9 @@
 package org.archive.spider.util;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
 public final class ByteFormatter {
 
     private ByteFormatter() {}
@@ -9,4 +13,21 @@ public final class ByteFormatter {
         char pre = "KMGTPE".charAt(exp - 1);
         return String.format("%.2f %sB", bytes / Math.pow(1024, exp), pre);
     }
+
+    public static long parse(@NotNull String str) {
+        String s = str.trim().toUpperCase(Locale.ROOT);
+        if (s.endsWith("IB")) {
+            s = s.substring(0, s.length() - 2);
+        } else if (s.endsWith("B")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        if (s.isEmpty()) {
+            throw new NumberFormatException("Invalid size \"" + str + "\"");
+        }
+        int exp = "KMGTPE".indexOf(s.charAt(s.length() - 1)) + 1;
+        if (exp > 0) {
+            s = s.substring(0, s.length() - 1).trim();
+        }
+        return (long) (Double.parseDouble(s) * Math.pow(1024, exp));
+    }
 }
@@ -4,6 +4,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
@@ -37,6 +38,23 @@ public final class PathUtils {
         return path + "/";
     }
 
+    public static String encode(@NotNull String path) {
+        StringBuilder builder = new StringBuilder(path.length() + 16);
+        int start = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1) end = path.length();
+            try {
+                builder.append(URLEncoder.encode(path.substring(start, end), "utf8").replace("+", "%20"));
+            } catch (UnsupportedEncodingException e) {
+                builder.append(path, start, end);
+            }
+            if (end < path.length()) builder.append('/');
+            start = end + 1;
+        }
+        return builder.toString();
+    }
+
     public static Path decode(Path s) {
         return Paths.get(decode(s.toString()));
     }
@@ -0,0 +1,167 @@
+package org.archive.spider.core;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * The metadata backend against a local server standing in for archive.org, serving the
+ * metadata API under "/metadata/" and HTML listings under "/download/".
+ */
+class MetadataListingBackendTest {
+
+    private static final String MD5 = "0123456789abcdef0123456789abcdef";
+    private static final String SHA1 = "0123456789abcdef0123456789abcdef01234567";
+
+    private MockWebServer server;
+    private PageFetcher fetcher;
+    private MetadataListingBackend backend;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        fetcher = new PageFetcher(new OkHttpClient(), null);
+        backend = new MetadataListingBackend(server.url("/metadata/").toString(), fetcher);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void listsWholeItemWithEncodedNestedHrefs() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"files\":["
+                + "{\"name\":\"01 Intro.mp3\",\"size\":\"1024\",\"mtime\":\"1600000000\",\"md5\":\"" + MD5 + "\",\"sha1\":\"" + SHA1 + "\"},"
+                + "{\"name\":\"disc1/02 Caf\u00e9 #1.flac\"}"
+                + "]}"));
+        List<ListingEntry> entries = backend.list("item");
+
+        assertEquals("/metadata/item", server.takeRequest().getPath());
+        assertEquals(Arrays.asList("01%20Intro.mp3", "disc1/02%20Caf%C3%A9%20%231.flac"), getHrefs(entries));
+        assertEquals(MD5, entries.get(0).md5);
+        assertEquals(SHA1, entries.get(0).sha1);
+        assertNull(entries.get(1).md5);
+        assertNull(entries.get(1).sha1);
+    }
+
+    @Test
+    void scalesSizeAndMtime() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"files\":["
+                + "{\"name\":\"a.mp3\",\"size\":\"1024\",\"mtime\":\"1600000000\"},"
+                + "{\"name\":\"b.mp3\",\"size\":2048,\"mtime\":1600000001},"
+                + "{\"name\":\"c.mp3\",\"size\":\"unknown\"},"
+                + "{\"name\":\"d.mp3\"}"
+                + "]}"));
+        List<ListingEntry> entries = backend.list("item");
+
+        assertEquals(1024, entries.get(0).size);
+        assertEquals(1600000000000L, entries.get(0).lastModified);
+        assertEquals(2048, entries.get(1).size);
+        assertEquals(1600000001000L, entries.get(1).lastModified);
+        assertEquals(-1, entries.get(2).size);
+        assertEquals(-1, entries.get(3).size);
+        assertEquals(-1, entries.get(3).lastModified);
+    }
+
+    @Test
+    void listsOnlyFilesBelowSubDirectoryResource() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"files\":["
+                + "{\"name\":\"disc 1/a.mp3\"},"
+                + "{\"name\":\"disc 1/extra/b.mp3\"},"
+                + "{\"name\":\"disc 10/c.mp3\"},"
+                + "{\"name\":\"disc 1/\"},"
+                + "{\"name\":\"cover.jpg\"}"
+                + "]}"));
+        List<ListingEntry> entries = backend.list("item/disc%201/");
+
+        assertEquals("/metadata/item", server.takeRequest().getPath());
+        assertEquals(Arrays.asList("a.mp3", "extra/b.mp3"), getHrefs(entries));
+    }
+
+    @Test
+    void skipsMalformedEntriesAndChecksums() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"files\":["
+                + "42,"
+                + "[\"x\"],"
+                + "{\"name\":{\"nested\":true}},"
+                + "{\"name\":\"a.mp3\",\"md5\":\"not hex\",\"sha1\":\"0123\"},"
+                + "{\"name\":\"b.mp3\",\"md5\":\"" + MD5.toUpperCase(Locale.ROOT) + "\",\"sha1\":[1]}"
+                + "]}"));
+        List<ListingEntry> entries = backend.list("item");
+
+        assertEquals(Arrays.asList("a.mp3", "b.mp3"), getHrefs(entries));
+        assertNull(entries.get(0).md5);
+        assertNull(entries.get(0).sha1);
+        assertEquals(MD5, entries.get(1).md5);
+        assertNull(entries.get(1).sha1);
+    }
+
+    @Test
+    void failsWithoutFiles() {
+        for (String body : new String[]{"{}", "{\"metadata\":{}}", "{\"files\":null}", "[]", "not json"}) {
+            server.enqueue(new MockResponse().setBody(body));
+            assertThrows(IOException.class, () -> backend.list("item"), body);
+        }
+    }
+
+    @Test
+    void fallsBackToHtmlListing() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if ("/metadata/item".equals(request.getPath())) {
+                    return new MockResponse().setBody("{}");
+                }
+                if ("/download/item/".equals(request.getPath())) {
+                    return new MockResponse().setBody(listing("../", "01%20Intro.mp3", "cover.jpg"));
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        final String baseUrl = server.url("/download/").toString();
+        Spider spider = new Spider(baseUrl, 1, Arrays.asList(backend, new HtmlListingBackend(baseUrl, fetcher)));
+        try {
+            DirectoryNode root = spider.search("item");
+            List<String> urls = new ArrayList<>();
+            for (Node it : root.getChildren()) {
+                urls.add(it.getUrl());
+            }
+            assertEquals(Arrays.asList(baseUrl + "item/01%20Intro.mp3", baseUrl + "item/cover.jpg"), urls);
+        } finally {
+            spider.shutdown();
+        }
+    }
+
+    private static String listing(String... hrefs) {
+        StringBuilder rows = new StringBuilder();
+        for (String href : hrefs) {
+            rows.append("<tr><td><a href=\"").append(href).append("\">").append(href).append("</a></td>")
+                    .append("<td>07-Aug-2020 12:38</td><td>1024</td></tr>\n");
+        }
+        return "<html><body><div id=\"maincontent\"><div><div><pre><table><thead><tr><th>Name</th></tr></thead><tbody>\n"
+                + rows + "</tbody></table></pre></div></div></div></body></html>";
+    }
+
+    private static List<String> getHrefs(List<ListingEntry> entries) {
+        List<String> hrefs = new ArrayList<>(entries.size());
+        for (ListingEntry it : entries) {
+            hrefs.add(it.href);
+        }
+        return hrefs;
+    }
+}
@@ -0,0 +1,112 @@
+package org.archive.spider.queue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Runs the queue the way coordinator and workers do, as separate JVMs sharing one directory:
+ * one worker dies holding a lease and the others have to finish every item between them.
+ */
+class WorkQueueProcessTest {
+
+    private static final long LEASE_TIMEOUT = 1000;
+    private static final int ITEMS = 60;
+    private static final int WORKERS = 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void workersDrainQueueDespiteCrashedWorker() throws Exception {
+        WorkQueue queue = new WorkQueue(directory.resolve("queue"), LEASE_TIMEOUT, 3);
+        for (int i = 0; i < ITEMS; i++) {
+            queue.put(Collections.singletonList("item-" + i));
+        }
+        queue.seal();
+
+        Process crashed = start("crash", directory.resolve("crashed.txt"));
+        assertTrue(crashed.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(1, queue.countLeased());
+
+        List<Process> workers = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            workers.add(start("work", directory.resolve("worker-" + i + ".txt")));
+        }
+        for (Process worker : workers) {
+            assertTrue(worker.waitFor(60, TimeUnit.SECONDS), "worker did not finish");
+            assertEquals(0, worker.exitValue());
+        }
+
+        assertTrue(queue.isFinished());
+        assertEquals(ITEMS, queue.countDone());
+        assertEquals(0, queue.countFailed());
+        Set<String> processed = new HashSet<>();
+        for (int i = 0; i < WORKERS; i++) {
+            processed.addAll(Files.readAllLines(directory.resolve("worker-" + i + ".txt"), StandardCharsets.UTF_8));
+        }
+        assertEquals(ITEMS, processed.size());
+        /* The crashed worker's item was reclaimed and done by someone else. */
+        assertTrue(processed.containsAll(Files.readAllLines(directory.resolve("crashed.txt"), StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void renewFailsOnceLeaseWasReclaimed() throws Exception {
+        WorkQueue queue = new WorkQueue(directory.resolve("queue"), LEASE_TIMEOUT, 3);
+        queue.put(Collections.singletonList("item"));
+        WorkQueue.Lease lease = queue.lease();
+        assertNotNull(lease);
+        assertTrue(lease.renew());
+        Thread.sleep(LEASE_TIMEOUT + 200);
+        assertEquals(1, queue.reclaim(true));
+        assertFalse(lease.renew());
+        assertNotNull(queue.lease());
+    }
+
+    private Process start(String mode, Path output) throws IOException {
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Worker.class.getName(),
+                mode, directory.resolve("queue").toString(), output.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(directory.resolve(mode + ".log").toFile()))
+                .start();
+    }
+
+    /* Entry point of the child processes. */
+    static final class Worker {
+        public static void main(String[] args) throws Exception {
+            final WorkQueue queue = new WorkQueue(Path.of(args[1]), LEASE_TIMEOUT, 3);
+            final Path output = Path.of(args[2]);
+            Files.createFile(output);
+            while (true) {
+                WorkQueue.Lease lease = queue.lease();
+                if (lease == null) {
+                    if (queue.isFinished()) return;
+                    Thread.sleep(50);
+                    continue;
+                }
+                Files.write(output, lease.lines, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+                if ("crash".equals(args[0])) {
+                    /* Dies without acknowledging or handing back, as a killed worker would. */
+                    Runtime.getRuntime().halt(1);
+                }
+                Thread.sleep(10);
+                lease.ack();
+            }
+        }
+    }
+}